@@ -0,0 +1,113 @@
+package io.vertx.redis.bench;
+
+import io.vertx.redis.Command;
+import io.vertx.redis.RedisCommands;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of requests, from the JSON message sent to the module, from the varargs used internally and from the typed
+ * builder used by the callers that send pre-encoded requests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandBenchmark {
+
+    private static final Charset ENCODING = Charset.forName("utf-8");
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        // length of the value argument
+        @Param({"16", "1024", "65536"})
+        public int size;
+
+        String value;
+        byte[] bytes;
+        JsonObject json;
+
+        @Setup
+        public void setup() {
+            char[] chars = new char[size];
+            Arrays.fill(chars, 'x');
+            value = new String(chars);
+            bytes = new byte[size];
+            json = new JsonObject()
+                    .putString("command", "set")
+                    .putArray("args", new JsonArray().addString("mykey").addString(value));
+        }
+    }
+
+    // small, negative and large numbers, as used by zadd or setex
+    private final Object[] numbers = {
+            "myzset", 1, "one", 255, "two", 256, "three", -1, "four", 1234567890123L, "five"
+    };
+
+    // sorted set scores: timestamps, infinites and fractions
+    private final Object[] scores = {
+            "myzset", 1697544000.0, "one", Double.POSITIVE_INFINITY, "two", Double.NEGATIVE_INFINITY, "three", 2.5, "four"
+    };
+
+    private final JsonObject numbersJson = new JsonObject()
+            .putString("command", "zadd")
+            .putArray("args", new JsonArray(numbers));
+
+    private final JsonObject multiWordJson = new JsonObject()
+            .putString("command", "config get")
+            .putArray("args", new JsonArray().addString("maxmemory"));
+
+    @Benchmark
+    public Command json(Payload payload) {
+        return new Command(payload.json, ENCODING);
+    }
+
+    @Benchmark
+    public Command varargs(Payload payload) {
+        return new Command("set", "mykey", payload.value);
+    }
+
+    @Benchmark
+    public Command varargsBytes(Payload payload) {
+        return new Command("set", "mykey", payload.bytes);
+    }
+
+    @Benchmark
+    public Command jsonNumbers() {
+        return new Command(numbersJson, ENCODING);
+    }
+
+    @Benchmark
+    public Command varargsNumbers() {
+        return new Command("zadd", numbers);
+    }
+
+    @Benchmark
+    public Command varargsScores() {
+        return new Command("zadd", scores);
+    }
+
+    @Benchmark
+    public Command jsonMultiWord() {
+        return new Command(multiWordJson, ENCODING);
+    }
+
+    @Benchmark
+    public Buffer builder(Payload payload) {
+        return RedisCommands.set("mykey", payload.value).toBuffer();
+    }
+
+    @Benchmark
+    public Buffer builderOptions(Payload payload) {
+        return RedisCommands.set("mykey", payload.value).ex(30).nx().toBuffer();
+    }
+}
@@ -0,0 +1,168 @@
+package io.vertx.redis.bench;
+
+import io.vertx.redis.RedisConnection;
+import io.vertx.redis.reply.Reply;
+import io.vertx.redis.reply.ReplyParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of replies as they come from the socket. Every operation parses one complete top level reply, except for
+ * the split benchmark where an operation is one reply received in two chunks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplyParserBenchmark {
+
+    // a multi bulk reply with every RESP2 type, for the split benchmark
+    private static final byte[] MIXED = "*5\r\n+OK\r\n:1234567\r\n$11\r\nhello world\r\n$-1\r\n*2\r\n$3\r\nfoo\r\n-ERR bar\r\n".getBytes();
+
+    /**
+     * Stands in for the connection, swallows the replies instead of dispatching them to commands.
+     */
+    static final class Sink extends RedisConnection {
+
+        private Blackhole blackhole;
+
+        Sink() {
+            super(null, null, null, 0, null, 0, null);
+        }
+
+        @Override
+        public void handleReply(Reply reply) {
+            blackhole.consume(reply);
+        }
+
+        @Override
+        public Handler<Reply> getElementHandler() {
+            return null;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Bulk {
+
+        @Param({"16", "1024", "65536"})
+        public int size;
+
+        Buffer reply;
+
+        @Setup
+        public void setup() {
+            byte[] value = new byte[size];
+            Arrays.fill(value, (byte) 'x');
+            reply = new Buffer("$" + size + "\r\n").appendBytes(value).appendString("\r\n");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Wide {
+
+        // number of bulk elements in the multi bulk reply
+        @Param({"10", "1000"})
+        public int size;
+
+        Buffer reply;
+
+        @Setup
+        public void setup() {
+            reply = new Buffer("*" + size + "\r\n");
+            for (int i = 0; i < size; i++) {
+                reply.appendString("$5\r\nvalue\r\n");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Deep {
+
+        // nesting level of the multi bulk replies
+        @Param({"8", "64"})
+        public int depth;
+
+        Buffer reply;
+
+        @Setup
+        public void setup() {
+            reply = new Buffer();
+            for (int i = 0; i < depth; i++) {
+                reply.appendString("*2\r\n:1\r\n");
+            }
+            reply.appendString(":2\r\n");
+        }
+    }
+
+    private final Sink sink = new Sink();
+    private final ReplyParser parser = new ReplyParser(sink);
+
+    private final Buffer status = new Buffer("+OK\r\n");
+    private final Buffer customStatus = new Buffer("+Background saving started\r\n");
+    private final Buffer integer = new Buffer(":1234567890\r\n");
+
+    // the mixed reply cut at every possible position, heads[i] holds the first i + 1 bytes
+    private final Buffer[] heads = new Buffer[MIXED.length - 1];
+    private final Buffer[] tails = new Buffer[MIXED.length - 1];
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        sink.blackhole = blackhole;
+
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = new Buffer(Arrays.copyOfRange(MIXED, 0, i + 1));
+            tails[i] = new Buffer(Arrays.copyOfRange(MIXED, i + 1, MIXED.length));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.close();
+    }
+
+    @Benchmark
+    public void status() {
+        parser.handle(status);
+    }
+
+    @Benchmark
+    public void customStatus() {
+        parser.handle(customStatus);
+    }
+
+    @Benchmark
+    public void integer() {
+        parser.handle(integer);
+    }
+
+    @Benchmark
+    public void bulk(Bulk bulk) {
+        parser.handle(bulk.reply);
+    }
+
+    @Benchmark
+    public void wideArray(Wide wide) {
+        parser.handle(wide.reply);
+    }
+
+    @Benchmark
+    public void deepArray(Deep deep) {
+        parser.handle(deep.reply);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public void split() {
+        for (int i = 0; i < heads.length; i++) {
+            parser.handle(heads[i]);
+            parser.handle(tails[i]);
+        }
+    }
+}
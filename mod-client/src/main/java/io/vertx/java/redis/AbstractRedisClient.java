@@ -3,6 +3,7 @@ package io.vertx.java.redis;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.eventbus.EventBus;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.json.JsonArray;
@@ -111,6 +112,17 @@ abstract class AbstractRedisClient {
         }
     }
 
+    /**
+     * Send a command already serialized to the Redis protocol, e.g. by {@code io.vertx.redis.RedisCommands}.
+     */
+    public final void send(Buffer request, Handler<Message<JsonObject>> handler) {
+        if (handler != null) {
+            eventBus.send(redisAddress, request, handler);
+        } else {
+            eventBus.send(redisAddress, request);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     final void send(String command, Object... args) {
 
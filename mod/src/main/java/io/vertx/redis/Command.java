@@ -1,10 +1,13 @@
 package io.vertx.redis;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.vertx.redis.reply.Reply;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.json.impl.Base64;
 import org.vertx.java.core.streams.WriteStream;
 
 import java.nio.charset.Charset;
@@ -14,171 +17,569 @@ public class Command {
     private static final byte ARGS_PREFIX = '*';
     private static final byte[] CRLF = "\r\n".getBytes();
     private static final byte BYTES_PREFIX = '$';
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    // see slot()
+    static final int NO_KEY = -1;
+    static final int CROSS_SLOT = -2;
+    // byte[] and Buffer arguments from this size are referenced by the request instead of copied
+    private static final int ZERO_COPY_SIZE = 16 * 1024;
+
+    // Redis representation of the infinite scores
+    private static final byte[] INF = "inf".getBytes();
+    private static final byte[] NEG_INF = "-inf".getBytes();
+    // doubles up to this magnitude hold an exact integer value that can be written as a long
+    private static final double MAX_EXACT_DOUBLE = 1L << 53;
+
+    // Number of chars of the decimal representation, without going through Long.toString
+    private static int digits(long value) {
+        if (value < 0) {
+            // Long.MIN_VALUE has no positive counterpart, count on the negative side
+            int digits = 2;
+            for (long p = -10; p >= value && digits < 20; p *= 10) {
+                digits++;
+            }
+            return digits;
+        }
+        int digits = 1;
+        for (long p = 10; p <= value && digits < 19; p *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    // Write the decimal representation of value, from the last digit back
+    private static int writeLong(long value, byte[] dst, int pos) {
+        final int end = pos + digits(value);
+        int i = end;
+
+        if (value < 0) {
+            dst[pos] = '-';
+            // work with negative values so Long.MIN_VALUE does not overflow
+            do {
+                dst[--i] = (byte) ('0' - (value % 10));
+                value /= 10;
+            } while (value != 0);
+        } else {
+            do {
+                dst[--i] = (byte) ('0' + (value % 10));
+                value /= 10;
+            } while (value != 0);
+        }
+
+        return end;
+    }
+
+    // Doubles that hold an integer value are written as one, like Redis formats them
+    private static boolean isExactLong(double value) {
+        return value == Math.rint(value) && Math.abs(value) <= MAX_EXACT_DOUBLE;
+    }
+
+    private final CommandInfo info;
+    // the serialized request, large byte[] and Buffer arguments are referenced in their own buffer instead of copied
+    private final Buffer[] buffers;
+    private final int length;
+    private int expectedReplies = 1;
+    private Handler<Reply> handler;
+    // receives the elements of a multi bulk reply as they are parsed
+    private Handler<Reply> elementHandler;
+    // milliseconds to wait for the reply, 0 to wait forever
+    private long timeout;
+    // set on the first reply or once timed out, the timer wheel ignores the command afterwards
+    private boolean answered;
+    // the handler got a timeout error, the replies that still come are dropped
+    private boolean expired;
+    // nanoseconds from the write to the last reply, -1 until then
+    private long latency = -1;
+
+    // maintained by the timer wheel of the connection, the deadline is 0 while not scheduled
+    long deadline;
+    int timeoutSlot;
+    Command prevTimeout;
+    Command nextTimeout;
+
+    public Command(JsonObject json, Charset encoding) {
+        this(json, encoding, false);
+    }
+
+    // In binary mode keys and values are the Base64 form of byte arrays (as produced by JsonArray.addBinary)
+    public Command(JsonObject json, Charset encoding, boolean binary) {
+        this(CommandInfo.forName(json.getString("command"), encoding), json.getArray("args"), encoding, binary);
+    }
+
+    /**
+     * @throws IllegalArgumentException in binary mode, if a key or a value is not valid Base64
+     */
+    public Command(CommandInfo info, final JsonArray args, Charset encoding, boolean binary) {
+        this.info = info;
+
+        Object[] values;
+        if (args == null) {
+            values = null;
+        } else {
+            values = new Object[args.size()];
+            // keys and values, the options and numbers stay as they are
+            final boolean[] data = binary ? info.data(jsonArguments(info, args)) : null;
+            final int words = info.getWords();
+            Object arg;
+            for (int i = 0; i < values.length; i++) {
+                arg = args.get(i);
+                if (binary && data[words + i] && arg instanceof String) {
+                    arg = decodeBase64((String) arg, i);
+                }
+                values[i] = arg;
+            }
+        }
+
+        buffers = encode(info, values, values == null ? 0 : values.length, encoding);
+        length = length(buffers);
+    }
+
+    public Command(String command, Object... args) {
+        Charset defaultCharset = Charset.defaultCharset();
+        info = CommandInfo.forName(command, defaultCharset);
+        buffers = encode(info, args, args == null ? 0 : args.length, defaultCharset);
+        length = length(buffers);
+    }
+
+    // A request already serialized (see RedisRequest)
+    Command(CommandInfo info, Buffer request) {
+        this.info = info;
+        buffers = new Buffer[] {request};
+        length = request.length();
+    }
+
+    // Same request and handlers, to send the command again (e.g.: to another cluster node). The buffers of a written
+    // request can be written again, Vert.x buffers are not released by the socket.
+    Command(Command command) {
+        info = command.info;
+        buffers = command.buffers;
+        length = command.length;
+        expectedReplies = command.expectedReplies;
+        handler = command.handler;
+        elementHandler = command.elementHandler;
+        timeout = command.timeout;
+    }
+
+    // The arguments of a JSON message, after the words of the name
+    private static CommandInfo.Arguments jsonArguments(final CommandInfo info, final JsonArray args) {
+        return new CommandInfo.Arguments() {
+            @Override
+            public int count() {
+                return info.getWords() + args.size();
+            }
 
-    private static final byte[] NEG_ONE = convert(-1);
+            @Override
+            public String get(int i) {
+                Object arg = args.get(i - info.getWords());
+                return arg == null ? null : arg.toString();
+            }
+        };
+    }
 
-    // Cache 256 number conversions. That should cover a huge
-    // percentage of numbers passed over the wire.
-    private static final int NUM_MAP_LENGTH = 256;
-    private static final byte[][] numMap = new byte[NUM_MAP_LENGTH][];
+    // The Base64 decoder is lenient, anything but the padded standard alphabet is refused first
+    static byte[] decodeBase64(String value, int index) {
+        final int length = value.length();
+        boolean valid = length % 4 == 0;
 
-    static {
-        for (int i = 0; i < NUM_MAP_LENGTH; i++) {
-            numMap[i] = convert(i);
+        for (int i = 0; i < length && valid; i++) {
+            char c = value.charAt(i);
+            if (c == '=') {
+                // only as the padding of the last group
+                valid = i >= length - 2 && (i == length - 1 || value.charAt(length - 1) == '=');
+            } else {
+                valid = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/';
+            }
         }
+
+        if (!valid) {
+            throw new IllegalArgumentException("argument " + index + " is not valid Base64");
+        }
+
+        return Base64.decode(value);
     }
 
-    // Optimized for the direct to ASCII bytes case
-    // About 5x faster than using Long.toString.getBytes
-    private static byte[] numToBytes(long value) {
-        if (value >= 0 && value < NUM_MAP_LENGTH) {
-            int index = (int) value;
-            return numMap[index];
-        } else if (value == -1) {
-            return NEG_ONE;
+    /**
+     * @return the first word of the name of a serialized request or null if it is not exactly one complete array of
+     * bulk strings, anything else would be written as is and shift the replies of the other commands
+     */
+    static String nameOf(Buffer request) {
+        final ByteBuf buf = request.getByteBuf();
+        final int end = buf.writerIndex();
+        int pos = buf.readerIndex();
+
+        // *<number of arguments>\r\n
+        if (pos == end || buf.getByte(pos) != ARGS_PREFIX) {
+            return null;
+        }
+        int lf = buf.indexOf(pos, end, (byte) '\n');
+        final int count = lf == -1 ? -1 : parseLength(buf, pos + 1, lf);
+        if (count < 1) {
+            return null;
+        }
+        pos = lf + 1;
+
+        String name = null;
+
+        for (int i = 0; i < count; i++) {
+            // $<length>\r\n<argument>\r\n
+            if (pos == end || buf.getByte(pos) != BYTES_PREFIX) {
+                return null;
+            }
+            lf = buf.indexOf(pos, end, (byte) '\n');
+            final int length = lf == -1 ? -1 : parseLength(buf, pos + 1, lf);
+            if (length < 0 || end - (lf + 1) < length + 2 ||
+                    buf.getByte(lf + 1 + length) != '\r' || buf.getByte(lf + 2 + length) != '\n') {
+                return null;
+            }
+            if (i == 0) {
+                name = buf.toString(lf + 1, length, UTF8);
+            }
+            pos = lf + 1 + length + 2;
         }
-        return convert(value);
+
+        // a second command or trailing bytes
+        return pos == end ? name : null;
     }
 
-    private static byte[] convert(long value) {
-        boolean negative = value < 0;
-        // Checked javadoc: If the argument is equal to 10^n for integer n, then the result is n.
-        // Also, if negative, leave another slot for the sign.
-        long abs = Math.abs(value);
-        int index = (value == 0 ? 0 : (int) Math.log10(abs)) + (negative ? 2 : 1);
-        byte[] bytes = new byte[index];
-        // Put the sign in the slot we saved
-        if (negative) bytes[0] = '-';
-        long next = abs;
-        while ((next /= 10) > 0) {
-            bytes[--index] = (byte) ('0' + (abs % 10));
-            abs = next;
+    // The digits between start and the \r before lf, -1 if they are not a length
+    private static int parseLength(ByteBuf buf, int start, int lf) {
+        final int cr = lf - 1;
+        if (cr <= start || cr - start > 10 || buf.getByte(cr) != '\r') {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = start; i < cr; i++) {
+            final byte b = buf.getByte(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
         }
-        bytes[--index] = (byte) ('0' + abs);
-        return bytes;
+        return value <= Integer.MAX_VALUE ? (int) value : -1;
     }
 
-    private void appendToBuffer(final Object value, final Charset encoding, final Buffer buffer) {
-        buffer.appendByte(BYTES_PREFIX);
-        if (value == null) {
-            buffer.appendByte((byte) '0');
-            buffer.appendBytes(CRLF);
-            buffer.appendBytes(CRLF);
-        } else {
-            byte[] bytes;
-            // Possible types are: String, JsonObject, JsonArray, JsonElement, Number, Boolean, byte[]
+    /**
+     * Serialize the request in a single exactly sized array: the encoded length of every argument is computed first
+     * so that strings can be encoded straight into the array without an intermediate byte[]. The name of the command
+     * is copied already serialized.
+     *
+     * byte[] and Buffer arguments of at least ZERO_COPY_SIZE bytes are not copied, the request is then made of the
+     * slices of the array around them and the arguments themselves.
+     */
+    static Buffer[] encode(CommandInfo info, Object[] args, int totalArgs, Charset encoding) {
 
-            if (value instanceof byte[]) {
-                bytes = (byte[]) value;
+        // the arguments as they will be written (byte[], Buffer, String or Number) and their encoded length
+        Object[] values = new Object[totalArgs];
+        int[] lengths = new int[totalArgs];
+        // number of arguments that are not copied
+        int references = 0;
+
+        final boolean utf8 = UTF8.equals(encoding);
+        final char[] chunk = utf8 ? CHUNK.get() : null;
+
+        final byte[] header = info.getHeader();
+        final int count = info.getWords() + totalArgs;
+
+        // *<number of arguments>\r\n<name>
+        int size = 1 + digits(count) + 2 + header.length;
+
+        for (int i = 0; i < totalArgs; i++) {
+            Object value = args[i];
+            int length;
+            // Possible types are: String, JsonObject, JsonArray, JsonElement, Number, Boolean, byte[], Buffer
+
+            if (value == null) {
+                length = 0;
+            } else if (value instanceof byte[]) {
+                length = ((byte[]) value).length;
             } else if (value instanceof Buffer) {
-                bytes = ((Buffer) value).getBytes();
-            } else if (value instanceof String) {
-                bytes = ((String) value).getBytes(encoding);
-            } else if (value instanceof Byte) {
-                bytes = numToBytes((Byte) value);
-            } else if (value instanceof Short) {
-                bytes = numToBytes((Short) value);
-            } else if (value instanceof Integer) {
-                bytes = numToBytes((Integer) value);
-            } else if (value instanceof Long) {
-                bytes = numToBytes((Long) value);
+                length = ((Buffer) value).length();
+            } else if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+                length = digits(((Number) value).longValue());
+            } else if ((value instanceof Double || value instanceof Float) && isExactLong(((Number) value).doubleValue())) {
+                length = digits((long) ((Number) value).doubleValue());
+            } else if ((value instanceof Double || value instanceof Float) && Double.isInfinite(((Number) value).doubleValue())) {
+                length = ((Number) value).doubleValue() > 0 ? INF.length : NEG_INF.length;
             } else {
-                bytes = value.toString().getBytes(encoding);
+                String string = value.toString();
+                if (utf8) {
+                    value = string;
+                    length = utf8Length(string, chunk);
+                } else {
+                    value = string.getBytes(encoding);
+                    length = ((byte[]) value).length;
+                }
             }
 
-            buffer.appendBytes(numToBytes(bytes.length));
+            if (length >= ZERO_COPY_SIZE && (value instanceof byte[] || value instanceof Buffer)) {
+                if (value instanceof byte[]) {
+                    value = new Buffer(Unpooled.wrappedBuffer((byte[]) value));
+                }
+                references++;
+                // $<length>\r\n, the payload is referenced, \r\n
+                size += 1 + digits(length) + 2 + 2;
+            } else {
+                // $<length>\r\n<payload>\r\n
+                size += 1 + digits(length) + 2 + length + 2;
+            }
 
-            buffer.appendBytes(CRLF);
-            buffer.appendBytes(bytes);
-            buffer.appendBytes(CRLF);
+            values[i] = value;
+            lengths[i] = length;
         }
-    }
 
-    private final Buffer buffer;
-    private int expectedReplies = 1;
-    private Handler<Reply> handler;
+        final byte[] bytes = new byte[size];
+        final Buffer[] buffers = new Buffer[1 + 2 * references];
+        int pos = 0;
+        // where the slice of the array that is being filled starts
+        int start = 0;
+        int b = 0;
 
-    public Command(JsonObject json, Charset encoding) {
+        bytes[pos++] = ARGS_PREFIX;
+        pos = writeLong(count, bytes, pos);
+        pos = write(CRLF, bytes, pos);
+        pos = write(header, bytes, pos);
 
-        String command = json.getString("command");
-        JsonArray args = json.getArray("args");
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
 
-        int totalArgs;
-        if (args == null) {
-            totalArgs = 0;
-        } else {
-            totalArgs = args.size();
+            bytes[pos++] = BYTES_PREFIX;
+            pos = writeLong(lengths[i], bytes, pos);
+            pos = write(CRLF, bytes, pos);
+
+            if (value instanceof byte[]) {
+                pos = write((byte[]) value, bytes, pos);
+            } else if (value instanceof Buffer && lengths[i] >= ZERO_COPY_SIZE) {
+                // wrapping does not copy the array
+                buffers[b++] = new Buffer(Unpooled.wrappedBuffer(bytes, start, pos - start));
+                buffers[b++] = (Buffer) value;
+                start = pos;
+            } else if (value instanceof Buffer) {
+                ((Buffer) value).getByteBuf().getBytes(0, bytes, pos, lengths[i]);
+                pos += lengths[i];
+            } else if (value instanceof String) {
+                pos = writeUtf8((String) value, chunk, bytes, pos);
+            } else if (value instanceof Double || value instanceof Float) {
+                // only integers and infinites are left as numbers
+                double d = ((Number) value).doubleValue();
+                if (Double.isInfinite(d)) {
+                    pos = write(d > 0 ? INF : NEG_INF, bytes, pos);
+                } else {
+                    pos = writeLong((long) d, bytes, pos);
+                }
+            } else if (value instanceof Number) {
+                pos = writeLong(((Number) value).longValue(), bytes, pos);
+            }
+
+            pos = write(CRLF, bytes, pos);
         }
 
-        int spc = command.indexOf(' '); // there are commands which are multi word
-        String extraCommand = null;
+        buffers[b] = new Buffer(Unpooled.wrappedBuffer(bytes, start, pos - start));
+        return buffers;
+    }
 
-        if (spc != -1) {
-            extraCommand = command.substring(spc + 1);
-            command = command.substring(0, spc);
+    static int length(Buffer[] buffers) {
+        int length = 0;
+        for (Buffer buffer : buffers) {
+            length += buffer.length();
         }
+        return length;
+    }
 
-        // serialize the request
-        buffer = new Buffer();
-        buffer.appendByte(ARGS_PREFIX);
-        if (extraCommand == null) {
-            buffer.appendBytes(numToBytes(totalArgs + 1));
-        } else {
-            buffer.appendBytes(numToBytes(totalArgs + 2));
+    private static int write(byte[] src, byte[] dst, int pos) {
+        System.arraycopy(src, 0, dst, pos, src.length);
+        return pos + src.length;
+    }
+
+    // Strings are copied in chunks to this array while being encoded, array access is much faster than charAt
+    private static final int CHUNK_SIZE = 1024;
+    private static final ThreadLocal<char[]> CHUNK = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[CHUNK_SIZE];
         }
-        buffer.appendBytes(CRLF);
-        // serialize the command
-        appendToBuffer(command.getBytes(encoding), encoding, buffer);
-        if (extraCommand != null) {
-            appendToBuffer(extraCommand.getBytes(encoding), encoding, buffer);
+    };
+
+    // End of the chunk starting at start, a surrogate pair is never split
+    private static int chunkEnd(String value, int start, int len) {
+        int end = Math.min(len, start + CHUNK_SIZE);
+        if (end < len && Character.isHighSurrogate(value.charAt(end - 1))) {
+            end--;
         }
+        return end;
+    }
 
-        // serialize arguments
-        for (int i = 0; i < totalArgs; i++) {
-            appendToBuffer(args.get(i), encoding, buffer);
+    // Same result as String.getBytes for UTF-8, unpaired surrogates are replaced with '?'
+    private static int utf8Length(String value, char[] chunk) {
+        final int len = value.length();
+        int length = len;
+
+        for (int start = 0, end; start < len; start = end) {
+            end = chunkEnd(value, start, len);
+            value.getChars(start, end, chunk, 0);
+
+            final int n = end - start;
+            for (int i = 0; i < n; i++) {
+                char c = chunk[i];
+                if (c < 0x80) {
+                    continue;
+                }
+                if (c < 0x800) {
+                    length += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(chunk[i + 1])) {
+                    // 4 bytes for the 2 chars
+                    length += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    length += 2;
+                }
+            }
         }
+
+        return length;
     }
 
-    public Command(String command, Object... args) {
+    private static int writeUtf8(String value, char[] chunk, byte[] dst, int pos) {
+        final int len = value.length();
+
+        for (int start = 0, end; start < len; start = end) {
+            end = chunkEnd(value, start, len);
+            value.getChars(start, end, chunk, 0);
+
+            final int n = end - start;
+            for (int i = 0; i < n; i++) {
+                char c = chunk[i];
+                if (c < 0x80) {
+                    dst[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    dst[pos++] = (byte) (0xc0 | (c >> 6));
+                    dst[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(chunk[i + 1])) {
+                    int codePoint = Character.toCodePoint(c, chunk[++i]);
+                    dst[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                    dst[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    dst[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    dst[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    dst[pos++] = '?';
+                } else {
+                    dst[pos++] = (byte) (0xe0 | (c >> 12));
+                    dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    dst[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
 
-        this.expectedReplies = 1;
-        this.handler = null;
+        return pos;
+    }
 
-        int totalArgs;
-        if (args == null) {
-            totalArgs = 0;
-        } else {
-            totalArgs = args.length;
+    // Parse the decimal number between start and end
+    private static long parseLong(ByteBuf buf, int start, int end) {
+        boolean negative = start < end && buf.getByte(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (buf.getByte(i) - '0');
         }
+        return negative ? -value : value;
+    }
 
-        int spc = command.indexOf(' '); // there are commands which are multi word
-        String extraCommand = null;
+    // The serialized request as a single buffer
+    private ByteBuf request() {
+        if (buffers.length == 1) {
+            return buffers[0].getByteBuf();
+        }
 
-        if (spc != -1) {
-            extraCommand = command.substring(spc + 1);
-            command = command.substring(0, spc);
+        ByteBuf[] bufs = new ByteBuf[buffers.length];
+        for (int i = 0; i < bufs.length; i++) {
+            bufs[i] = buffers[i].getByteBuf();
         }
+        return Unpooled.wrappedBuffer(bufs);
+    }
 
-        // serialize the request
-        buffer = new Buffer();
-        buffer.appendByte(ARGS_PREFIX);
-        if (extraCommand == null) {
-            buffer.appendBytes(numToBytes(totalArgs + 1));
-        } else {
-            buffer.appendBytes(numToBytes(totalArgs + 2));
+    /**
+     * @return the argument at index (0 is the command name) read from the serialized request, null if there are not
+     * that many arguments
+     */
+    String argument(int index) {
+        final ByteBuf buf = request();
+        final int end = buf.writerIndex();
+        int pos = buf.readerIndex();
+
+        // *<number of arguments>\r\n
+        int lf = buf.indexOf(pos, end, (byte) '\n');
+        if (index >= parseLong(buf, pos + 1, lf - 1)) {
+            return null;
         }
-        buffer.appendBytes(CRLF);
-        // serialize the command
-        Charset defaultCharset = Charset.defaultCharset();
-        appendToBuffer(command.getBytes(defaultCharset), defaultCharset, buffer);
-        if (extraCommand != null) {
-            appendToBuffer(extraCommand.getBytes(defaultCharset), defaultCharset, buffer);
+        pos = lf + 1;
+
+        for (int i = 0; ; i++) {
+            // $<length>\r\n<argument>\r\n
+            lf = buf.indexOf(pos, end, (byte) '\n');
+            final int length = (int) parseLong(buf, pos + 1, lf - 1);
+            if (i == index) {
+                return buf.toString(lf + 1, length, UTF8);
+            }
+            pos = lf + 1 + length + 2;
         }
+    }
 
-        // serialize arguments
-        for (int i = 0; i < totalArgs; i++) {
-            appendToBuffer(args[i], defaultCharset, buffer);
+    /**
+     * @return the hash slot of the keys of the command, NO_KEY if it has no keys or CROSS_SLOT if they do not all hash
+     * to the same slot. The keys are read from the serialized request, the same way whether it was built from JSON,
+     * from varargs or by a RedisRequest.
+     */
+    int slot() {
+        if (info.getFirstKey() == 0 && !info.is(CommandInfo.MOVABLE_KEYS)) {
+            return NO_KEY;
+        }
+
+        final ByteBuf buf = request();
+        final int end = buf.writerIndex();
+        int pos = buf.readerIndex();
+
+        // *<number of arguments>\r\n
+        int lf = buf.indexOf(pos, end, (byte) '\n');
+        final int count = (int) parseLong(buf, pos + 1, lf - 1);
+        pos = lf + 1;
+
+        // where each argument starts and its length
+        final int[] starts = new int[count];
+        final int[] lengths = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            // $<length>\r\n<argument>\r\n
+            lf = buf.indexOf(pos, end, (byte) '\n');
+            lengths[i] = (int) parseLong(buf, pos + 1, lf - 1);
+            starts[i] = lf + 1;
+            pos = starts[i] + lengths[i] + 2;
+        }
+
+        // the number of keys and the STREAMS option of the commands with movable keys are read as text
+        final int[] keys = info.keys(new CommandInfo.Arguments() {
+            @Override
+            public int count() {
+                return count;
+            }
+
+            @Override
+            public String get(int i) {
+                return buf.toString(starts[i], lengths[i], UTF8);
+            }
+        });
+
+        int slot = NO_KEY;
+
+        for (int key : keys) {
+            int keySlot = HashSlot.of(buf, starts[key], lengths[key]);
+            if (slot == NO_KEY) {
+                slot = keySlot;
+            } else if (slot != keySlot) {
+                return CROSS_SLOT;
+            }
         }
+
+        return slot;
     }
 
     public Command setExpectedReplies(int expectedReplies) {
@@ -191,8 +592,40 @@ public class Command {
         return this;
     }
 
+    public Command setElementHandler(Handler<Reply> elementHandler) {
+        this.elementHandler = elementHandler;
+        return this;
+    }
+
+    public Command setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
     public void writeTo(WriteStream writeStream) {
-        writeStream.write(buffer);
+        for (Buffer buffer : buffers) {
+            writeStream.write(buffer);
+        }
+    }
+
+    void appendTo(Buffer batch) {
+        for (Buffer buffer : buffers) {
+            batch.appendBuffer(buffer);
+        }
+    }
+
+    // Size of the serialized request
+    int length() {
+        return length;
+    }
+
+    // True if some arguments are referenced instead of copied, they should not be copied in a batch either
+    boolean hasReferences() {
+        return buffers.length > 1;
+    }
+
+    public CommandInfo getInfo() {
+        return info;
     }
 
     public int getExpectedReplies() {
@@ -203,4 +636,41 @@ public class Command {
         return handler;
     }
 
+    public Handler<Reply> getElementHandler() {
+        return elementHandler;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return the nanoseconds elapsed between the write of the command and its last reply, -1 before the last reply.
+     * Already available in the reply handler.
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    boolean isAnswered() {
+        return answered;
+    }
+
+    void answered() {
+        answered = true;
+    }
+
+    boolean isExpired() {
+        return expired;
+    }
+
+    void expired() {
+        answered = true;
+        expired = true;
+    }
+
 }
@@ -0,0 +1,501 @@
+package io.vertx.redis;
+
+import org.vertx.java.core.buffer.Buffer;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metadata of a Redis command, looked up once per message. The name is kept already serialized as bulk strings, so
+ * encoding a request only copies it.
+ *
+ * Arity and key positions follow the reply of the COMMAND command: the name counts as an argument (both words for
+ * subcommands such as "config get"), a negative arity is a minimum and a negative last key position counts from the
+ * end of the arguments. Commands with MOVABLE_KEYS have keys that only the request itself tells, see keys().
+ *
+ * The table is maintained by hand, the positions follow the key specs of COMMAND DOCS.
+ */
+public final class CommandInfo {
+
+    public static final int WRITE = 1;
+    public static final int READONLY = 1 << 1;
+    public static final int ADMIN = 1 << 2;
+    public static final int PUBSUB = 1 << 3;
+    public static final int BLOCKING = 1 << 4;
+    // some keys follow a number of keys (eval, zunionstore...) or the STREAMS option (xread, xreadgroup)
+    public static final int MOVABLE_KEYS = 1 << 5;
+
+    private static final byte[] CRLF = "\r\n".getBytes();
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final Map<String, CommandInfo> COMMANDS = new HashMap<>();
+
+    // first value position of the commands whose values start right after their movable keys
+    private static final int AFTER_KEYS = -1;
+
+    static {
+        // the commands of the clients generated by Generate.groovy
+        add("append", 3, WRITE, 1, 1, 1);
+        add("auth", -2, 0, 0, 0, 0);
+        add("bgrewriteaof", 1, ADMIN, 0, 0, 0);
+        add("bgsave", -1, ADMIN, 0, 0, 0);
+        add("bitcount", -2, READONLY, 1, 1, 1);
+        add("bitop", -4, WRITE, 2, -1, 1);
+        add("blpop", -3, WRITE | BLOCKING, 1, -2, 1);
+        add("brpop", -3, WRITE | BLOCKING, 1, -2, 1);
+        add("brpoplpush", 4, WRITE | BLOCKING, 1, 2, 1);
+        add("client getname", 2, 0, 0, 0, 0);
+        add("client kill", -3, ADMIN, 0, 0, 0);
+        add("client list", -2, ADMIN, 0, 0, 0);
+        add("client setname", 3, 0, 0, 0, 0);
+        add("config get", -3, ADMIN, 0, 0, 0);
+        add("config resetstat", 2, ADMIN, 0, 0, 0);
+        add("config rewrite", 2, ADMIN, 0, 0, 0);
+        add("config set", -4, ADMIN, 0, 0, 0);
+        add("dbsize", 1, READONLY, 0, 0, 0);
+        add("debug object", 3, ADMIN, 0, 0, 0);
+        add("debug segfault", 2, ADMIN, 0, 0, 0);
+        add("decr", 2, WRITE, 1, 1, 1);
+        add("decrby", 3, WRITE, 1, 1, 1);
+        add("del", -2, WRITE, 1, -1, 1);
+        add("discard", 1, 0, 0, 0, 0);
+        add("dump", 2, READONLY, 1, 1, 1);
+        add("echo", 2, 0, 0, 0, 0);
+        numKeys("eval", -3, 0, 0, 0, 0, 2);
+        numKeys("evalsha", -3, 0, 0, 0, 0, 2);
+        add("exec", 1, 0, 0, 0, 0);
+        add("exists", -2, READONLY, 1, -1, 1);
+        add("expire", -3, WRITE, 1, 1, 1);
+        add("expireat", -3, WRITE, 1, 1, 1);
+        add("flushall", -1, WRITE, 0, 0, 0);
+        add("flushdb", -1, WRITE, 0, 0, 0);
+        add("get", 2, READONLY, 1, 1, 1);
+        add("getbit", 3, READONLY, 1, 1, 1);
+        add("getrange", 4, READONLY, 1, 1, 1);
+        add("getset", 3, WRITE, 1, 1, 1);
+        add("hdel", -3, WRITE, 1, 1, 1);
+        add("hexists", 3, READONLY, 1, 1, 1);
+        add("hget", 3, READONLY, 1, 1, 1);
+        add("hgetall", 2, READONLY, 1, 1, 1, ResponseTransform.ARRAY_TO_OBJECT);
+        add("hincrby", 4, WRITE, 1, 1, 1);
+        add("hincrbyfloat", 4, WRITE, 1, 1, 1);
+        add("hkeys", 2, READONLY, 1, 1, 1);
+        add("hlen", 2, READONLY, 1, 1, 1);
+        add("hmget", -3, READONLY, 1, 1, 1);
+        add("hmset", -4, WRITE, 1, 1, 1);
+        add("hset", -4, WRITE, 1, 1, 1);
+        add("hsetnx", 4, WRITE, 1, 1, 1);
+        add("hvals", 2, READONLY, 1, 1, 1);
+        add("incr", 2, WRITE, 1, 1, 1);
+        add("incrby", 3, WRITE, 1, 1, 1);
+        add("incrbyfloat", 3, WRITE, 1, 1, 1);
+        add("info", -1, 0, 0, 0, 0, ResponseTransform.INFO);
+        add("keys", 2, READONLY, 0, 0, 0);
+        add("lastsave", 1, 0, 0, 0, 0);
+        add("lindex", 3, READONLY, 1, 1, 1);
+        add("linsert", 5, WRITE, 1, 1, 1);
+        add("llen", 2, READONLY, 1, 1, 1);
+        add("lpop", -2, WRITE, 1, 1, 1);
+        add("lpush", -3, WRITE, 1, 1, 1);
+        add("lpushx", -3, WRITE, 1, 1, 1);
+        add("lrange", 4, READONLY, 1, 1, 1);
+        add("lrem", 4, WRITE, 1, 1, 1);
+        add("lset", 4, WRITE, 1, 1, 1);
+        add("ltrim", 4, WRITE, 1, 1, 1);
+        add("mget", -2, READONLY, 1, -1, 1);
+        add("migrate", -6, WRITE, 3, 3, 1);
+        add("monitor", 1, ADMIN, 0, 0, 0);
+        add("move", 3, WRITE, 1, 1, 1);
+        add("mset", -3, WRITE, 1, -1, 2);
+        add("msetnx", -3, WRITE, 1, -1, 2);
+        add("multi", 1, 0, 0, 0, 0);
+        add("object", -2, READONLY, 2, 2, 1);
+        add("persist", 2, WRITE, 1, 1, 1);
+        add("pexpire", -3, WRITE, 1, 1, 1);
+        add("pexpireat", -3, WRITE, 1, 1, 1);
+        add("ping", -1, 0, 0, 0, 0);
+        add("psetex", 4, WRITE, 1, 1, 1);
+        add("psubscribe", -2, PUBSUB, 0, 0, 0);
+        add("pttl", 2, READONLY, 1, 1, 1);
+        add("publish", 3, PUBSUB, 0, 0, 0);
+        add("pubsub", -2, PUBSUB, 0, 0, 0);
+        add("punsubscribe", -1, PUBSUB, 0, 0, 0);
+        add("quit", -1, 0, 0, 0, 0);
+        add("randomkey", 1, READONLY, 0, 0, 0);
+        add("rename", 3, WRITE, 1, 2, 1);
+        add("renamenx", 3, WRITE, 1, 2, 1);
+        add("restore", -4, WRITE, 1, 1, 1);
+        add("rpop", -2, WRITE, 1, 1, 1);
+        add("rpoplpush", 3, WRITE, 1, 2, 1);
+        add("rpush", -3, WRITE, 1, 1, 1);
+        add("rpushx", -3, WRITE, 1, 1, 1);
+        add("sadd", -3, WRITE, 1, 1, 1);
+        add("save", 1, ADMIN, 0, 0, 0);
+        add("scard", 2, READONLY, 1, 1, 1);
+        add("script exists", -3, 0, 0, 0, 0);
+        add("script flush", -2, 0, 0, 0, 0);
+        add("script kill", 2, 0, 0, 0, 0);
+        add("script load", 3, 0, 0, 0, 0);
+        add("sdiff", -2, READONLY, 1, -1, 1);
+        add("sdiffstore", -3, WRITE, 1, -1, 1);
+        add("select", 2, 0, 0, 0, 0);
+        add("set", -3, WRITE, 1, 1, 1);
+        add("setbit", 4, WRITE, 1, 1, 1);
+        add("setex", 4, WRITE, 1, 1, 1);
+        add("setnx", 3, WRITE, 1, 1, 1);
+        add("setrange", 4, WRITE, 1, 1, 1);
+        add("shutdown", -1, ADMIN, 0, 0, 0);
+        add("sinter", -2, READONLY, 1, -1, 1);
+        add("sinterstore", -3, WRITE, 1, -1, 1);
+        add("sismember", 3, READONLY, 1, 1, 1);
+        add("slaveof", 3, ADMIN, 0, 0, 0);
+        add("slowlog", -2, ADMIN, 0, 0, 0);
+        add("smembers", 2, READONLY, 1, 1, 1);
+        add("smove", 4, WRITE, 1, 2, 1);
+        add("sort", -2, WRITE, 1, 1, 1);
+        add("spop", -2, WRITE, 1, 1, 1);
+        add("srandmember", -2, READONLY, 1, 1, 1);
+        add("srem", -3, WRITE, 1, 1, 1);
+        add("strlen", 2, READONLY, 1, 1, 1);
+        add("subscribe", -2, PUBSUB, 0, 0, 0);
+        add("sunion", -2, READONLY, 1, -1, 1);
+        add("sunionstore", -3, WRITE, 1, -1, 1);
+        add("sync", 1, ADMIN, 0, 0, 0);
+        add("time", 1, 0, 0, 0, 0);
+        add("ttl", 2, READONLY, 1, 1, 1);
+        add("type", 2, READONLY, 1, 1, 1);
+        add("unsubscribe", -1, PUBSUB, 0, 0, 0);
+        add("unwatch", 1, 0, 0, 0, 0);
+        add("watch", -2, 0, 1, -1, 1);
+        add("zadd", -4, WRITE, 1, 1, 1);
+        add("zcard", 2, READONLY, 1, 1, 1);
+        add("zcount", 4, READONLY, 1, 1, 1);
+        add("zincrby", 4, WRITE, 1, 1, 1);
+        numKeys("zinterstore", -4, WRITE, 1, 1, 1, 2);
+        add("zrange", -4, READONLY, 1, 1, 1);
+        add("zrangebyscore", -4, READONLY, 1, 1, 1);
+        add("zrank", -3, READONLY, 1, 1, 1);
+        add("zrem", -3, WRITE, 1, 1, 1);
+        add("zremrangebyrank", 4, WRITE, 1, 1, 1);
+        add("zremrangebyscore", 4, WRITE, 1, 1, 1);
+        add("zrevrange", -4, READONLY, 1, 1, 1);
+        add("zrevrangebyscore", -4, READONLY, 1, 1, 1);
+        add("zrevrank", -3, READONLY, 1, 1, 1);
+        add("zscore", 3, READONLY, 1, 1, 1);
+        numKeys("zunionstore", -4, WRITE, 1, 1, 1, 2);
+
+        // blocking commands that are not in the generated clients, routed to the blocking connections
+        add("blmove", 6, WRITE | BLOCKING, 1, 2, 1);
+        numKeys("blmpop", -5, WRITE | BLOCKING, 0, 0, 0, 2);
+        numKeys("bzmpop", -5, WRITE | BLOCKING, 0, 0, 0, 2);
+        add("bzpopmax", -3, WRITE | BLOCKING, 1, -2, 1);
+        add("bzpopmin", -3, WRITE | BLOCKING, 1, -2, 1);
+        // only blocking with the BLOCK option, the group and consumer names come before STREAMS
+        streams("xread", -4, READONLY | BLOCKING, 1);
+        streams("xreadgroup", -7, WRITE | BLOCKING, 4);
+
+        // the data that is not a key, given in Base64 like the keys in binary mode (first value, last value, step)
+        values("append", 2, 2, 1);
+        values("echo", 1, 1, 1);
+        values("getset", 2, 2, 1);
+        values("hdel", 2, -1, 1);
+        values("hexists", 2, 2, 1);
+        values("hget", 2, 2, 1);
+        values("hincrby", 2, 2, 1);
+        values("hincrbyfloat", 2, 2, 1);
+        values("hmget", 2, -1, 1);
+        values("hmset", 2, -1, 1);
+        values("hset", 2, -1, 1);
+        values("hsetnx", 2, 3, 1);
+        values("linsert", 3, 4, 1);
+        values("lpush", 2, -1, 1);
+        values("lpushx", 2, -1, 1);
+        values("lrem", 3, 3, 1);
+        values("lset", 3, 3, 1);
+        values("mset", 2, -1, 2);
+        values("msetnx", 2, -1, 2);
+        values("psetex", 3, 3, 1);
+        values("psubscribe", 1, -1, 1);
+        values("publish", 1, 2, 1);
+        values("punsubscribe", 1, -1, 1);
+        values("restore", 3, 3, 1);
+        values("rpush", 2, -1, 1);
+        values("rpushx", 2, -1, 1);
+        values("sadd", 2, -1, 1);
+        values("set", 2, 2, 1);
+        values("setex", 3, 3, 1);
+        values("setnx", 2, 2, 1);
+        values("setrange", 3, 3, 1);
+        values("sismember", 2, 2, 1);
+        values("smove", 3, 3, 1);
+        values("srem", 2, -1, 1);
+        values("subscribe", 1, -1, 1);
+        values("unsubscribe", 1, -1, 1);
+        values("zadd", 3, -1, 2);
+        // ZADD key [NX|XX] [GT|LT] [CH] [INCR] score member [score member...]
+        valueOptions("zadd", 2, "nx", "xx", "gt", "lt", "ch", "incr");
+        values("zincrby", 3, 3, 1);
+        values("zrank", 2, 2, 1);
+        values("zrem", 2, -1, 1);
+        values("zrevrank", 2, 2, 1);
+        values("zscore", 2, 2, 1);
+        // the arguments of the script follow its keys
+        values("eval", AFTER_KEYS, -1, 1);
+        values("evalsha", AFTER_KEYS, -1, 1);
+    }
+
+    private static void add(String name, int arity, int flags, int firstKey, int lastKey, int keyStep) {
+        add(name, arity, flags, firstKey, lastKey, keyStep, ResponseTransform.NONE);
+    }
+
+    private static void add(String name, int arity, int flags, int firstKey, int lastKey, int keyStep, ResponseTransform transform) {
+        COMMANDS.put(name, new CommandInfo(name, ASCII, arity, flags, firstKey, lastKey, keyStep, 0, 0, transform));
+    }
+
+    // The keys at fixed positions are followed by the number of keys found at position numKeys, then the keys
+    private static void numKeys(String name, int arity, int flags, int firstKey, int lastKey, int keyStep, int numKeys) {
+        COMMANDS.put(name, new CommandInfo(name, ASCII, arity, flags | MOVABLE_KEYS, firstKey, lastKey, keyStep, numKeys, 0, ResponseTransform.NONE));
+    }
+
+    // The arguments after the STREAMS option, looked for from position streamsFrom, are the keys then as many ids
+    private static void streams(String name, int arity, int flags, int streamsFrom) {
+        COMMANDS.put(name, new CommandInfo(name, ASCII, arity, flags | MOVABLE_KEYS, 0, 0, 0, 0, streamsFrom, ResponseTransform.NONE));
+    }
+
+    private static void values(String name, int firstValue, int lastValue, int valueStep) {
+        CommandInfo info = COMMANDS.get(name);
+        info.firstValue = firstValue;
+        info.lastValue = lastValue;
+        info.valueStep = valueStep;
+    }
+
+    // Options that may be given from position optionsFrom, each one shifts the values that follow
+    private static void valueOptions(String name, int optionsFrom, String... options) {
+        CommandInfo info = COMMANDS.get(name);
+        info.optionsFrom = optionsFrom;
+        info.valueOptions = options;
+    }
+
+    /**
+     * @return the metadata of a known command, the name is not case sensitive
+     */
+    public static CommandInfo get(String command) {
+        CommandInfo info = COMMANDS.get(command);
+        if (info == null) {
+            // not in the canonical lower case form
+            info = COMMANDS.get(command.toLowerCase());
+        }
+        return info;
+    }
+
+    /**
+     * @return the metadata of a known command or, for unknown commands, a description without flags nor keys. The
+     * descriptions of unknown commands are not kept, any name can come from a message.
+     */
+    public static CommandInfo forName(String command, Charset encoding) {
+        CommandInfo info = COMMANDS.get(command);
+        if (info == null) {
+            String name = command.toLowerCase();
+            info = COMMANDS.get(name);
+            if (info == null) {
+                info = new CommandInfo(name, encoding, 0, 0, 0, 0, 0, 0, 0, ResponseTransform.NONE);
+            }
+        }
+        return info;
+    }
+
+    /**
+     * The arguments of a request, whatever its form, as needed to find its keys.
+     */
+    interface Arguments {
+        // number of arguments, counting the name
+        int count();
+
+        // the argument at a position counting the name, as text
+        String get(int i);
+    }
+
+    private final String name;
+    private final byte[] header;
+    private final int words;
+    private final int arity;
+    private final int flags;
+    private final int firstKey;
+    private final int lastKey;
+    private final int keyStep;
+    // position of the number of movable keys, 0 if there is none
+    private final int numKeys;
+    // position from which the STREAMS option is looked for, 0 if the command has none
+    private final int streamsFrom;
+    private final ResponseTransform transform;
+    // positions of the values, like the keys; set once by the static table
+    private int firstValue;
+    private int lastValue;
+    private int valueStep;
+    private int optionsFrom;
+    private String[] valueOptions;
+
+    private CommandInfo(String name, Charset encoding, int arity, int flags, int firstKey, int lastKey, int keyStep,
+                        int numKeys, int streamsFrom, ResponseTransform transform) {
+        this.name = name;
+        this.arity = arity;
+        this.flags = flags;
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.keyStep = keyStep;
+        this.numKeys = numKeys;
+        this.streamsFrom = streamsFrom;
+        this.transform = transform;
+
+        // there are commands which are multi word
+        String[] parts = name.split(" ", 2);
+        Buffer buffer = new Buffer();
+        for (String part : parts) {
+            byte[] bytes = part.getBytes(encoding);
+            buffer.appendByte((byte) '$');
+            buffer.appendString(Integer.toString(bytes.length));
+            buffer.appendBytes(CRLF);
+            buffer.appendBytes(bytes);
+            buffer.appendBytes(CRLF);
+        }
+
+        header = buffer.getBytes();
+        words = parts.length;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // The serialized name, to be copied as is in the request
+    byte[] getHeader() {
+        return header;
+    }
+
+    // Number of arguments taken by the name
+    int getWords() {
+        return words;
+    }
+
+    /**
+     * @return the number of arguments including the name, negative when it is a minimum, 0 if unknown
+     */
+    public int getArity() {
+        return arity;
+    }
+
+    public boolean is(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * @return the position of the first key in the arguments (counting the name), 0 if the command has no keys
+     */
+    public int getFirstKey() {
+        return firstKey;
+    }
+
+    public int getLastKey() {
+        return lastKey;
+    }
+
+    public int getKeyStep() {
+        return keyStep;
+    }
+
+    /**
+     * @return the positions of the keys in the arguments (counting the name), in order. When the number of keys or the
+     * STREAMS option of a command with MOVABLE_KEYS is missing or wrong only the fixed keys are returned, Redis then
+     * replies with an error.
+     */
+    int[] keys(Arguments args) {
+        final int count = args.count();
+
+        int fixed = 0;
+        final int last = Math.min(count - 1, lastKey < 0 ? count + lastKey : lastKey);
+        if (firstKey != 0 && last >= firstKey) {
+            fixed = (last - firstKey) / keyStep + 1;
+        }
+
+        // range of the movable keys
+        int from = 0;
+        int movable = 0;
+
+        if (numKeys != 0 && numKeys < count) {
+            try {
+                int n = Integer.parseInt(args.get(numKeys));
+                if (n > 0 && n < count - numKeys) {
+                    from = numKeys + 1;
+                    movable = n;
+                }
+            } catch (NumberFormatException e) {
+                // not a number, no keys
+            }
+        } else if (streamsFrom != 0) {
+            for (int i = streamsFrom; i < count; i++) {
+                if ("streams".equalsIgnoreCase(args.get(i))) {
+                    // a key and an id per stream
+                    int remaining = count - i - 1;
+                    if (remaining > 0 && remaining % 2 == 0) {
+                        from = i + 1;
+                        movable = remaining / 2;
+                    }
+                    break;
+                }
+            }
+        }
+
+        final int[] keys = new int[fixed + movable];
+        for (int i = 0; i < fixed; i++) {
+            keys[i] = firstKey + i * keyStep;
+        }
+        for (int i = 0; i < movable; i++) {
+            keys[fixed + i] = from + i;
+        }
+        return keys;
+    }
+
+    /**
+     * @return for each argument (counting the name) whether it is data, a key or a value, rather than the name or an
+     * option. In binary mode only the data is given in Base64.
+     */
+    boolean[] data(Arguments args) {
+        final int count = args.count();
+        final boolean[] data = new boolean[count];
+        int afterKeys = 1;
+
+        for (int key : keys(args)) {
+            data[key] = true;
+            afterKeys = key + 1;
+        }
+
+        if (valueStep != 0) {
+            int first = firstValue == AFTER_KEYS ? Math.max(afterKeys, numKeys + 1) : firstValue;
+            if (valueOptions != null) {
+                for (int i = optionsFrom; i < count && isValueOption(args.get(i)); i++) {
+                    first++;
+                }
+            }
+            final int last = Math.min(count - 1, lastValue < 0 ? count + lastValue : lastValue);
+            for (int i = first; i <= last; i += valueStep) {
+                data[i] = true;
+            }
+        }
+
+        return data;
+    }
+
+    private boolean isValueOption(String arg) {
+        for (String option : valueOptions) {
+            if (option.equalsIgnoreCase(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ResponseTransform getTransform() {
+        return transform;
+    }
+}
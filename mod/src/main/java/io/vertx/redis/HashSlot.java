@@ -0,0 +1,53 @@
+package io.vertx.redis;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Hash slot of a key in a Redis Cluster: the CRC16 (XMODEM) of the key modulo 16384. When the key contains a non
+ * empty hash tag, between the first '{' and the next '}', only the tag is hashed so that related keys can be kept in
+ * the same slot, e.g. {user1000}.following and {user1000}.followers.
+ */
+final class HashSlot {
+
+    static final int SLOTS = 16384;
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i << 8;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            TABLE[i] = crc & 0xffff;
+        }
+    }
+
+    private HashSlot() {
+    }
+
+    static int of(byte[] key) {
+        return of(Unpooled.wrappedBuffer(key), 0, key.length);
+    }
+
+    static int of(ByteBuf buf, int start, int length) {
+        int end = start + length;
+
+        int open = buf.indexOf(start, end, (byte) '{');
+        if (open != -1) {
+            int close = buf.indexOf(open + 1, end, (byte) '}');
+            if (close > open + 1) {
+                start = open + 1;
+                end = close;
+            }
+        }
+
+        int crc = 0;
+        for (int i = start; i < end; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ buf.getByte(i)) & 0xff]) & 0xffff;
+        }
+
+        return crc & (SLOTS - 1);
+    }
+}
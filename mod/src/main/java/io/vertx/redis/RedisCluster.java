@@ -0,0 +1,434 @@
+package io.vertx.redis;
+
+import io.vertx.redis.reply.BulkReply;
+import io.vertx.redis.reply.ErrorReply;
+import io.vertx.redis.reply.IntegerReply;
+import io.vertx.redis.reply.MultiBulkReply;
+import io.vertx.redis.reply.Reply;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Routes the commands to the nodes of a Redis Cluster. The slot map is loaded with CLUSTER SLOTS from a seed node and
+ * every master gets a pool of its own, a command goes to the master of the hash slot of its keys. Commands sent to the
+ * same node are pipelined by its pool whatever their slot.
+ *
+ * <ul>
+ *     <li>MOVED errors update the slot and send the command again to the new node, the whole map is loaded again</li>
+ *     <li>ASK errors send the command once to the node importing the slot, preceded by ASKING</li>
+ *     <li>keys of different slots are refused without a round trip, like Redis does</li>
+ *     <li>a transaction goes to the node of its first key, MULTI waits for it</li>
+ *     <li>commands without keys go to the node the map is loaded from, subscriptions to the first seed node</li>
+ * </ul>
+ *
+ * The commands held until the map is loaded or until the node of a transaction is known are bounded by maxPending
+ * and time out like the commands waiting in a connection.
+ */
+class RedisCluster {
+
+    // redirections followed for a command before giving the error to the caller
+    private static final int MAX_REDIRECTS = 5;
+    // delay before asking the next node for the map
+    private static final long RETRY_DELAY = 500;
+
+    /**
+     * Creates the pool of a node, the first time the node is seen.
+     */
+    interface PoolFactory {
+        RedisPool create(String host, int port);
+    }
+
+    // A command held by the cluster, with the time its timeout ends (0 for none)
+    private static class Held {
+        final Command command;
+        final long deadline;
+
+        Held(Command command, long deadline) {
+            this.command = command;
+            this.deadline = deadline;
+        }
+    }
+
+    private static class Node {
+        final String host;
+        final int port;
+        final RedisPool pool;
+
+        Node(String host, int port, RedisPool pool) {
+            this.host = host;
+            this.port = port;
+            this.pool = pool;
+        }
+    }
+
+    private final Vertx vertx;
+    private final Logger logger;
+    private final PoolFactory factory;
+    private final long refreshInterval;
+    // commands held in each queue, the next ones fail right away (0 for no limit)
+    private final int maxPending;
+
+    private final Node[] slots = new Node[HashSlot.SLOTS];
+    // the seed nodes first, then the nodes in the order they are found
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, Node> addresses = new HashMap<>();
+    // node the map is asked to, moves to the next one when it does not answer
+    private int current;
+    private boolean refreshing;
+    private long timer = -1;
+    private boolean closed;
+
+    // commands received before the map is first loaded, null once loaded
+    private Queue<Held> waiting = new ArrayDeque<>();
+    // sweeps the held commands for timeouts while some have one
+    private long expireTimer = -1;
+
+    // node of the transaction in progress, null when there is none
+    private Node pinned;
+    private boolean multi;
+    // MULTI and the commands without keys that follow it, until a key tells the node of the transaction
+    private final Queue<Held> deferred = new ArrayDeque<>();
+
+    RedisCluster(Vertx vertx, Logger logger, String[] hosts, int[] ports, PoolFactory factory, long refreshInterval, int maxPending) {
+        this.vertx = vertx;
+        this.logger = logger;
+        this.factory = factory;
+        this.refreshInterval = refreshInterval;
+        this.maxPending = maxPending;
+
+        for (int i = 0; i < hosts.length; i++) {
+            node(hosts[i], ports[i]);
+        }
+    }
+
+    void start() {
+        refresh();
+    }
+
+    void close() {
+        closed = true;
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        if (expireTimer != -1) {
+            vertx.cancelTimer(expireTimer);
+            expireTimer = -1;
+        }
+        if (waiting != null) {
+            fail(waiting, "Connection closed");
+        }
+        fail(deferred, "Connection closed");
+        for (Node node : nodes) {
+            node.pool.close();
+        }
+    }
+
+    private Node node(String host, int port) {
+        final String address = host + ":" + port;
+        Node node = addresses.get(address);
+
+        if (node == null) {
+            node = new Node(host, port, factory.create(host, port));
+            node.pool.connect();
+            nodes.add(node);
+            addresses.put(address, node);
+        }
+
+        return node;
+    }
+
+    void send(Command command) {
+        if (waiting != null) {
+            hold(waiting, command);
+            return;
+        }
+
+        final String name = command.getInfo().getName();
+
+        switch (name) {
+            case "subscribe":
+            case "psubscribe":
+            case "unsubscribe":
+            case "punsubscribe":
+                // the messages published on any node reach every node
+                nodes.get(0).pool.send(command);
+                return;
+        }
+
+        final int slot = command.slot();
+
+        if (slot == Command.CROSS_SLOT) {
+            command.getHandler().handle(new ErrorReply("CROSSSLOT Keys in request don't hash to the same slot"));
+            return;
+        }
+
+        if (!deferred.isEmpty()) {
+            if (slot == Command.NO_KEY && !name.equals("exec") && !name.equals("discard")) {
+                hold(deferred, command);
+                return;
+            }
+
+            pinned = nodeFor(slot);
+            final long now = System.currentTimeMillis();
+            Held held;
+            while ((held = deferred.poll()) != null) {
+                pinned.pool.send(release(held, now));
+            }
+        }
+
+        if (pinned != null) {
+            final Node node = pinned;
+            switch (name) {
+                case "multi":
+                    multi = true;
+                    break;
+                case "exec":
+                case "discard":
+                    multi = false;
+                    pinned = null;
+                    break;
+                case "unwatch":
+                    if (!multi) {
+                        pinned = null;
+                    }
+                    break;
+            }
+            // errors end up in the reply of EXEC, there is nothing to redirect
+            node.pool.send(command);
+            return;
+        }
+
+        switch (name) {
+            case "multi":
+                multi = true;
+                hold(deferred, command);
+                return;
+            case "watch":
+                pinned = nodeFor(slot);
+                break;
+        }
+
+        Node node = nodeFor(slot);
+        Redirect redirect = new Redirect(command, node);
+        node.pool.send(command.setHandler(redirect));
+    }
+
+    private void hold(Queue<Held> queue, Command command) {
+        if (maxPending > 0 && queue.size() >= maxPending) {
+            // same as a connection, failing fast is better than piling up commands
+            command.answered();
+            command.getHandler().handle(new ErrorReply("Overloaded"));
+            return;
+        }
+
+        final long timeout = command.getTimeout();
+        queue.offer(new Held(command, timeout > 0 ? System.currentTimeMillis() + timeout : 0));
+
+        if (timeout > 0 && expireTimer == -1) {
+            expireTimer = vertx.setPeriodic(TimerWheel.TICK, new Handler<Long>() {
+                @Override
+                public void handle(Long event) {
+                    expire();
+                }
+            });
+        }
+    }
+
+    // The command leaves the cluster, the time it was held counts in its timeout
+    private static Command release(Held held, long now) {
+        if (held.deadline != 0) {
+            held.command.setTimeout(Math.max(1, held.deadline - now));
+        }
+        return held.command;
+    }
+
+    private void expire() {
+        final long now = System.currentTimeMillis();
+        boolean timeouts = expire(deferred, now);
+        if (waiting != null) {
+            timeouts |= expire(waiting, now);
+        }
+
+        if (!timeouts) {
+            vertx.cancelTimer(expireTimer);
+            expireTimer = -1;
+        }
+    }
+
+    // Fail the held commands whose timeout has passed, returns true if some of the others still have a timeout
+    private static boolean expire(Queue<Held> queue, long now) {
+        boolean timeouts = false;
+
+        for (Iterator<Held> it = queue.iterator(); it.hasNext(); ) {
+            Held held = it.next();
+            if (held.deadline == 0) {
+                continue;
+            }
+            if (held.deadline <= now) {
+                it.remove();
+                held.command.expired();
+                held.command.getHandler().handle(new ErrorReply("Timeout"));
+            } else {
+                timeouts = true;
+            }
+        }
+
+        return timeouts;
+    }
+
+    private static void fail(Queue<Held> queue, String error) {
+        Held held;
+        while ((held = queue.poll()) != null) {
+            held.command.answered();
+            held.command.getHandler().handle(new ErrorReply(error));
+        }
+    }
+
+    private Node nodeFor(int slot) {
+        Node node = slot == Command.NO_KEY ? null : slots[slot];
+        // slots not covered by the map are redirected by the node the map is loaded from
+        return node != null ? node : nodes.get(current);
+    }
+
+    /**
+     * Follows the MOVED and ASK errors of a command, other replies go to its handler.
+     */
+    private class Redirect implements Handler<Reply> {
+        private final Command command;
+        private final Handler<Reply> handler;
+        private Node node;
+        private int redirects;
+
+        Redirect(Command command, Node node) {
+            this.command = command;
+            this.handler = command.getHandler();
+            this.node = node;
+        }
+
+        @Override
+        public void handle(Reply reply) {
+            if (reply.getType() != '-') {
+                handler.handle(reply);
+                return;
+            }
+
+            final String error = ((ErrorReply) reply).data();
+            final boolean moved = error.startsWith("MOVED ");
+
+            if ((moved || error.startsWith("ASK ")) && redirects < MAX_REDIRECTS && !closed) {
+                // MOVED <slot> <host>:<port>, an empty host is the host of the node that answered
+                String[] fields = error.split(" ");
+                int colon = fields[2].lastIndexOf(':');
+                String host = colon == 0 ? node.host : fields[2].substring(0, colon);
+
+                redirects++;
+                node = node(host, Integer.parseInt(fields[2].substring(colon + 1)));
+                Command redirected = new Command(command).setHandler(this);
+
+                if (moved) {
+                    slots[Integer.parseInt(fields[1])] = node;
+                    // a slot seldom moves alone
+                    refresh();
+                    node.pool.send(redirected);
+                } else {
+                    node.pool.asking(redirected);
+                }
+                return;
+            }
+
+            if (error.startsWith("CLUSTERDOWN") || error.equals("Connection closed") || error.equals("Unable to connect")) {
+                // the node failed, its slots are served by another node once the cluster notices it
+                refresh();
+            }
+
+            handler.handle(reply);
+        }
+    }
+
+    private void refresh() {
+        if (refreshing || closed) {
+            return;
+        }
+
+        refreshing = true;
+
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+
+        final Node node = nodes.get(current);
+
+        // not in the transaction of a caller that would get the map in the reply of its EXEC
+        node.pool.sendOutsideTransaction(new Command("cluster", "slots").setTimeout(RETRY_DELAY * 2).setHandler(new Handler<Reply>() {
+            @Override
+            public void handle(Reply reply) {
+                refreshing = false;
+
+                if (closed) {
+                    return;
+                }
+
+                Reply[] data = reply.getType() == '*' ? ((MultiBulkReply) reply).data() : null;
+
+                if (data != null && data.length > 0) {
+                    update(node, data);
+                    schedule(refreshInterval);
+                } else {
+                    logger.warn("No slots from cluster node " + node.host + ":" + node.port + ": " + reply.data());
+                    current = (current + 1) % nodes.size();
+                    schedule(RETRY_DELAY);
+                }
+
+                if (waiting != null) {
+                    // without a map the commands are redirected by the seed nodes
+                    Queue<Held> commands = waiting;
+                    waiting = null;
+                    final long now = System.currentTimeMillis();
+                    Held held;
+                    while ((held = commands.poll()) != null) {
+                        send(release(held, now));
+                    }
+                }
+            }
+        }));
+    }
+
+    // Each range is: start slot, end slot, master and replicas as host, port, id...
+    private void update(Node queried, Reply[] ranges) {
+        for (Reply range : ranges) {
+            Reply[] fields = ((MultiBulkReply) range).data();
+            Reply[] master = ((MultiBulkReply) fields[2]).data();
+
+            String host = ((BulkReply) master[0]).asString("UTF-8");
+            int port = ((IntegerReply) master[1]).data().intValue();
+            // the node does not know its own address
+            Node node = node(host.isEmpty() ? queried.host : host, port);
+
+            int end = ((IntegerReply) fields[1]).data().intValue();
+            for (int slot = ((IntegerReply) fields[0]).data().intValue(); slot <= end; slot++) {
+                slots[slot] = node;
+            }
+        }
+    }
+
+    private void schedule(long delay) {
+        timer = vertx.setTimer(delay, new Handler<Long>() {
+            @Override
+            public void handle(Long event) {
+                timer = -1;
+                refresh();
+            }
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package io.vertx.redis;
+
+/**
+ * Typed factories for the common commands, the other commands are available through {@link #command}.
+ *
+ * <pre>
+ * eventBus.send("io.vertx.mod-redis", RedisCommands.set("key", "value").ex(30).toBuffer(), replyHandler);
+ * </pre>
+ */
+public final class RedisCommands {
+
+    private RedisCommands() {
+    }
+
+    public static RedisRequest command(String command, Object... args) {
+        return new RedisRequest(command, args);
+    }
+
+    public static RedisRequest ping() {
+        return new RedisRequest("ping");
+    }
+
+    public static RedisRequest get(Object key) {
+        return new RedisRequest("get", key);
+    }
+
+    public static SetRequest set(Object key, Object value) {
+        return new SetRequest(key, value);
+    }
+
+    public static RedisRequest del(Object... keys) {
+        return new RedisRequest("del", keys);
+    }
+
+    public static RedisRequest exists(Object key) {
+        return new RedisRequest("exists", key);
+    }
+
+    public static RedisRequest expire(Object key, long seconds) {
+        return new RedisRequest("expire", key, seconds);
+    }
+
+    public static RedisRequest ttl(Object key) {
+        return new RedisRequest("ttl", key);
+    }
+
+    public static RedisRequest incr(Object key) {
+        return new RedisRequest("incr", key);
+    }
+
+    public static RedisRequest incrby(Object key, long increment) {
+        return new RedisRequest("incrby", key, increment);
+    }
+
+    public static RedisRequest decr(Object key) {
+        return new RedisRequest("decr", key);
+    }
+
+    public static RedisRequest hget(Object key, Object field) {
+        return new RedisRequest("hget", key, field);
+    }
+
+    public static RedisRequest hset(Object key, Object field, Object value) {
+        return new RedisRequest("hset", key, field, value);
+    }
+
+    public static RedisRequest hgetall(Object key) {
+        return new RedisRequest("hgetall", key);
+    }
+
+    public static RedisRequest lpush(Object key, Object... values) {
+        return new RedisRequest("lpush", key).args(values);
+    }
+
+    public static RedisRequest rpush(Object key, Object... values) {
+        return new RedisRequest("rpush", key).args(values);
+    }
+
+    public static RedisRequest lrange(Object key, long start, long stop) {
+        return new RedisRequest("lrange", key, start, stop);
+    }
+
+    public static RedisRequest zadd(Object key, double score, Object member) {
+        return new RedisRequest("zadd", key, score, member);
+    }
+
+    public static RedisRequest zrange(Object key, long start, long stop) {
+        return new RedisRequest("zrange", key, start, stop);
+    }
+
+    public static RedisRequest publish(Object channel, Object message) {
+        return new RedisRequest("publish", channel, message);
+    }
+}
@@ -1,6 +1,7 @@
 package io.vertx.redis;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import io.vertx.redis.impl.RedisAsyncResult;
 import io.vertx.redis.impl.RedisSubscriptions;
@@ -11,6 +12,7 @@ import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.net.NetClient;
 import org.vertx.java.core.net.NetSocket;
@@ -21,20 +23,63 @@ import org.vertx.java.core.net.NetSocket;
  */
 public class RedisConnection {
 
+    private static final byte[] MESSAGE = "message".getBytes();
+    private static final byte[] PMESSAGE = "pmessage".getBytes();
+    private static final byte[] SUBSCRIBE = "subscribe".getBytes();
+    private static final byte[] UNSUBSCRIBE = "unsubscribe".getBytes();
+    private static final byte[] PSUBSCRIBE = "psubscribe".getBytes();
+    private static final byte[] PUNSUBSCRIBE = "punsubscribe".getBytes();
+    private static final CommandInfo SELECT = CommandInfo.get("select");
+    private static final CommandInfo MULTI = CommandInfo.get("multi");
+    private static final CommandInfo WATCH = CommandInfo.get("watch");
+    private static final CommandInfo UNWATCH = CommandInfo.get("unwatch");
+    private static final CommandInfo EXEC = CommandInfo.get("exec");
+    private static final CommandInfo DISCARD = CommandInfo.get("discard");
 
     private final Vertx vertx;
     private final Logger logger;
 
-    private final Queue<Handler<Reply>> repliesQueue = new LinkedList<>();
-    private final Queue<Command> connectingQueue = new LinkedList<>();
+    private final ReplyQueue repliesQueue = new ReplyQueue();
+    // commands waiting for the connection, for the socket to drain or for replies to come back
+    private final Deque<Command> pendingQueue = new ArrayDeque<>();
 
+    // handlers of the pushed messages, null for a connection that only carries regular commands
     private final RedisSubscriptions subscriptions;
     private NetSocket netSocket;
+    // opens the sockets of every attempt, a client per attempt would leak its close hook until the verticle stops
+    private NetClient client;
 
-    private final String host;
-    private final int port;
+    // null until the address is known (e.g. given by a sentinel), the commands wait meanwhile
+    private String host;
+    private int port;
     private final String auth;
-    private final int select;
+    // database selected on each new socket, follows the SELECT commands answered
+    private int select;
+    // requested protocol version, 3 negotiates RESP3 with HELLO
+    private final int protocol;
+    // true once the server accepted RESP3 on the current socket
+    private boolean resp3;
+    // MULTI or WATCH answered on the current socket and not ended yet, a health check PING would join the transaction
+    private boolean multi;
+    private boolean watching;
+
+    // deadlines of the commands with a timeout, swept by a periodic timer while not empty
+    private final TimerWheel timeouts = new TimerWheel();
+    private long timer = -1;
+    // last time data was received, to tell a stalled connection from a slow command
+    private long lastRead;
+
+    // commands sent in the same event loop turn are written at once, up to this size (0 disables the batching)
+    private int maxBatchBytes = 64 * 1024;
+    private Buffer batch;
+    // commands in the batch, replayed on the next connection if the socket is lost before the batch is written
+    private final List<Command> batched = new ArrayList<>();
+    private boolean flushScheduled;
+
+    // commands written and waiting for their reply, the next ones wait in the pending queue (0 for no limit)
+    private int maxInFlight = 10000;
+    // commands in the pending queue, the next ones fail right away (0 for no limit)
+    private int maxPending = 10000;
 
     private static enum State {
         DISCONNECTED,
@@ -43,17 +88,103 @@ public class RedisConnection {
     }
 
     private State state = State.DISCONNECTED;
+    // AUTH, HELLO, SELECT and the subscriptions of a new socket are in progress, the other commands wait
+    private boolean handshaking;
+
+    // backoff between the connection attempts, doubled on each failure up to maxReconnectDelay
+    private long reconnectDelay = 100;
+    private long maxReconnectDelay = 5000;
+    // failed attempts in a row before the pending commands fail
+    private int reconnectAttempts = 10;
+    private int attempts;
+    private long reconnectTimer = -1;
+    // idle time before a health check PING (0 to disable)
+    private long pingInterval = 30000;
+    private long pingTimer = -1;
+    // closed for good
+    private boolean closed;
 
     public RedisConnection(Vertx vertx, final Logger logger, String host, int port, String auth, int select, RedisSubscriptions subscriptions) {
+        this(vertx, logger, host, port, auth, select, 2, subscriptions);
+    }
+
+    public RedisConnection(Vertx vertx, final Logger logger, String host, int port, String auth, int select, int protocol, RedisSubscriptions subscriptions) {
         this.vertx = vertx;
         this.logger = logger;
         this.host = host;
         this.port = port;
         this.auth = auth;
         this.select = select;
+        this.protocol = protocol;
         this.subscriptions = subscriptions;
     }
 
+    public RedisConnection setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    public RedisConnection setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public RedisConnection setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+        return this;
+    }
+
+    public RedisConnection setReconnectDelay(long reconnectDelay) {
+        this.reconnectDelay = reconnectDelay;
+        return this;
+    }
+
+    public RedisConnection setMaxReconnectDelay(long maxReconnectDelay) {
+        this.maxReconnectDelay = maxReconnectDelay;
+        return this;
+    }
+
+    public RedisConnection setReconnectAttempts(int reconnectAttempts) {
+        this.reconnectAttempts = reconnectAttempts;
+        return this;
+    }
+
+    public RedisConnection setPingInterval(long pingInterval) {
+        this.pingInterval = pingInterval;
+        return this;
+    }
+
+    /**
+     * Change the database of the connection without opening it: selected right away if the socket is open, otherwise
+     * once connected.
+     */
+    void select(int db) {
+        if (db == select) {
+            return;
+        }
+
+        select = db;
+        if (state != State.DISCONNECTED) {
+            send(new Command("select", db).setHandler(new Handler<Reply>() {
+                @Override
+                public void handle(Reply reply) {
+                    if (reply.getType() == '-') {
+                        logger.error(((ErrorReply) reply).data());
+                    }
+                }
+            }));
+        }
+    }
+
+    boolean isOpen() {
+        return state != State.DISCONNECTED;
+    }
+
+    // replies the connection is waiting for, including the commands waiting for the connection
+    int outstanding() {
+        return repliesQueue.size() + pendingQueue.size();
+    }
+
     private void doAuth(final Handler<Void> next) {
         if (auth != null) {
             Command command = new Command("auth", auth).setHandler(new Handler<Reply>() {
@@ -74,7 +205,37 @@ public class RedisConnection {
                 }
             });
 
-            send(command);
+            // ahead of the commands pending while connecting
+            dispatch(command);
+        } else {
+            next.handle(null);
+        }
+    }
+
+    private void doHello(final Handler<Void> next) {
+        if (protocol == 3) {
+            Command command = new Command("hello", 3).setHandler(new Handler<Reply>() {
+                @Override
+                public void handle(Reply reply) {
+                    switch (reply.getType()) {
+                        case '-':
+                            // servers before 6.0 do not know HELLO, keep talking RESP2
+                            logger.warn("RESP3 not available: " + ((ErrorReply) reply).data());
+                            next.handle(null);
+                            break;
+                        case '%':
+                            // OK
+                            resp3 = true;
+                            next.handle(null);
+                            break;
+                        default:
+                            throw new RuntimeException("Unexpected reply: " + reply.getType() + ": " + reply.data());
+                    }
+                }
+            });
+
+            // ahead of the commands pending while connecting
+            dispatch(command);
         } else {
             next.handle(null);
         }
@@ -100,20 +261,53 @@ public class RedisConnection {
                 }
             });
 
-            send(command);
+            // ahead of the commands pending while connecting
+            dispatch(command);
         } else {
             next.handle(null);
         }
     }
 
+    // Restore the subscriptions of a reconnected socket, the replies are not waited for
+    private void doSubscribe() {
+        if (subscriptions == null) {
+            return;
+        }
+
+        Handler<Reply> handler = new Handler<Reply>() {
+            @Override
+            public void handle(Reply reply) {
+                if (reply.getType() == '-') {
+                    logger.error(((ErrorReply) reply).data());
+                }
+            }
+        };
+
+        if (subscriptions.channelSize() > 0) {
+            dispatch(new Command("subscribe", subscriptions.channelArguments().toArray())
+                    .setExpectedReplies(subscriptions.channelSize()).setHandler(handler));
+        }
+
+        if (subscriptions.patternSize() > 0) {
+            dispatch(new Command("psubscribe", subscriptions.patternArguments().toArray())
+                    .setExpectedReplies(subscriptions.patternSize()).setHandler(handler));
+        }
+    }
+
     private void onConnect(final Handler<Void> next) {
         doAuth(new Handler<Void>() {
             @Override
             public void handle(Void event) {
-                doSelect(new Handler<Void>() {
+                doHello(new Handler<Void>() {
                     @Override
                     public void handle(Void event) {
-                        next.handle(null);
+                        doSelect(new Handler<Void>() {
+                            @Override
+                            public void handle(Void event) {
+                                doSubscribe();
+                                next.handle(null);
+                            }
+                        });
                     }
                 });
             }
@@ -121,79 +315,88 @@ public class RedisConnection {
     }
 
     void connect(final AsyncResultHandler<Void> resultHandler) {
-        if (state == State.DISCONNECTED) {
+        if (state == State.DISCONNECTED && !closed && host != null) {
             state = State.CONNECTING;
-            // instantiate a parser for the connection
-            final ReplyParser replyParser = new ReplyParser(this);
+            resp3 = false;
+            final String connectHost = host;
+            final int connectPort = port;
 
-            NetClient client = vertx.createNetClient();
-            client.connect(port, host, new AsyncResultHandler<NetSocket>() {
+            if (client == null) {
+                client = vertx.createNetClient();
+            }
+            client.connect(connectPort, connectHost, new AsyncResultHandler<NetSocket>() {
                 @Override
                 public void handle(final AsyncResult<NetSocket> asyncResult) {
-                    if (asyncResult.failed()) {
+                    if (asyncResult.succeeded() && (closed || !connectHost.equals(host) || connectPort != port)) {
+                        // closed or moved to another server while connecting
+                        asyncResult.result().close();
+                        state = State.DISCONNECTED;
+                        connect(resultHandler);
+                    } else if (asyncResult.failed()) {
                         logger.error("Net client error", asyncResult.cause());
-                        // clean the reply queue
-                        while (!repliesQueue.isEmpty()) {
-                            repliesQueue.poll().handle(new ErrorReply("Connection closed"));
-                        }
-                        // clean waiting for connection queue
-                        while (!connectingQueue.isEmpty()) {
-                            connectingQueue.poll().getHandler().handle(new ErrorReply("Connection closed"));
+                        // update state
+                        state = State.DISCONNECTED;
+                        // the commands keep waiting for the next attempts, up to reconnectAttempts
+                        if (++attempts >= reconnectAttempts) {
+                            fail(pendingQueue, "Unable to connect");
                         }
                         if (resultHandler != null) {
                             resultHandler.handle(new RedisAsyncResult<Void>(asyncResult.cause()));
                         }
-                        // make sure the socket is closed
-                        if (netSocket != null) {
-                            netSocket.close();
-                        }
-                        // update state
-                        state = State.DISCONNECTED;
+                        reconnect();
                     } else {
+                        final NetSocket socket = asyncResult.result();
+                        // instantiate a parser for the connection, closed with the socket
+                        final ReplyParser replyParser = new ReplyParser(RedisConnection.this);
                         state = State.CONNECTED;
-                        netSocket = asyncResult.result();
+                        handshaking = true;
+                        netSocket = socket;
+                        lastRead = System.currentTimeMillis();
                         // set the data handler (the reply parser)
-                        netSocket.dataHandler(replyParser);
+                        socket.dataHandler(new Handler<Buffer>() {
+                            public void handle(Buffer buffer) {
+                                lastRead = System.currentTimeMillis();
+                                try {
+                                    replyParser.handle(buffer);
+                                } catch (RuntimeException e) {
+                                    // the reply stream cannot be trusted anymore, failing the pending
+                                    // commands is better than waiting for replies that will never match
+                                    logger.error("Protocol error, closing the connection", e);
+                                    socket.close();
+                                }
+                            }
+                        });
+                        // resume the pending commands once the socket accepts writes again
+                        socket.drainHandler(new Handler<Void>() {
+                            public void handle(Void event) {
+                                sendPending();
+                            }
+                        });
                         // set the exception handler
-                        netSocket.exceptionHandler(new Handler<Throwable>() {
+                        socket.exceptionHandler(new Handler<Throwable>() {
                             public void handle(Throwable e) {
                                 logger.error("Socket client error", e);
-                                // clean the reply queue
-                                while (!repliesQueue.isEmpty()) {
-                                    repliesQueue.poll().handle(new ErrorReply("Connection closed"));
-                                }
-                                // clean waiting for connection queue
-                                while (!connectingQueue.isEmpty()) {
-                                    connectingQueue.poll().getHandler().handle(new ErrorReply("Connection closed"));
-                                }
-                                // update state
-                                state = State.DISCONNECTED;
+                                disconnected(socket);
+                                socket.close();
                             }
                         });
                         // set the close handler
-                        netSocket.closeHandler(new Handler<Void>() {
+                        socket.closeHandler(new Handler<Void>() {
                             public void handle(Void arg0) {
                                 logger.info("Socket closed");
-                                // clean the reply queue
-                                while (!repliesQueue.isEmpty()) {
-                                    repliesQueue.poll().handle(new ErrorReply("Connection closed"));
-                                }
-                                // clean waiting for connection queue
-                                while (!connectingQueue.isEmpty()) {
-                                    connectingQueue.poll().getHandler().handle(new ErrorReply("Connection closed"));
-                                }
-                                // update state
-                                state = State.DISCONNECTED;
+                                replyParser.close();
+                                disconnected(socket);
                             }
                         });
 
                         onConnect(new Handler<Void>() {
                             @Override
                             public void handle(Void event) {
+                                handshaking = false;
+                                attempts = 0;
+                                startPing();
                                 // process waiting queue (for messages that have been requested while the connection was not totally established)
-                                while (!connectingQueue.isEmpty()) {
-                                    send(connectingQueue.poll());
-                                }
+                                sendPending();
                                 // emit ready!
                                 if (resultHandler != null) {
                                     resultHandler.handle(new RedisAsyncResult<Void>(null));
@@ -206,55 +409,449 @@ public class RedisConnection {
         }
     }
 
+    /**
+     * Move the connection to another server (e.g. after a failover). The commands already written fail as the
+     * connection is closed, the pending ones are sent to the new server.
+     */
+    void setAddress(String host, int port) {
+        if (host.equals(this.host) && port == this.port) {
+            return;
+        }
+
+        logger.info("Moving connection to " + host + ":" + port);
+        this.host = host;
+        this.port = port;
+        attempts = 0;
+
+        switch (state) {
+            case CONNECTED:
+                final NetSocket socket = netSocket;
+                disconnected(socket);
+                socket.close();
+                reconnectNow();
+                break;
+            case CONNECTING:
+                // the socket being opened is closed once connected
+                break;
+            case DISCONNECTED:
+                if (reconnectTimer != -1) {
+                    reconnectNow();
+                } else if (!pendingQueue.isEmpty()) {
+                    connect(null);
+                }
+        }
+    }
+
+    private void reconnectNow() {
+        if (reconnectTimer != -1) {
+            vertx.cancelTimer(reconnectTimer);
+            reconnectTimer = -1;
+        }
+        connect(null);
+    }
+
+    /**
+     * Close the connection for good, it will not reconnect.
+     */
+    void close() {
+        closed = true;
+        for (long id : new long[] {reconnectTimer, pingTimer, timer}) {
+            if (id != -1) {
+                vertx.cancelTimer(id);
+            }
+        }
+        reconnectTimer = pingTimer = timer = -1;
+        if (netSocket != null) {
+            netSocket.close();
+        }
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        fail(pendingQueue, "Connection closed");
+    }
+
+    // The socket is gone: the commands written may or may not have been executed and fail, the commands not written
+    // yet are replayed on the next connection
+    private void disconnected(NetSocket socket) {
+        if (socket != netSocket) {
+            // already handled
+            return;
+        }
+
+        netSocket = null;
+        // update state
+        state = State.DISCONNECTED;
+        handshaking = false;
+        multi = watching = false;
+        // the batch never reached this socket, its commands go first on the next connection
+        batch = null;
+        int written = repliesQueue.size();
+        for (int i = batched.size() - 1; i >= 0; i--) {
+            Command command = batched.get(i);
+            if (command.getExpectedReplies() > 0) {
+                written--;
+            }
+            if (!command.isExpired()) {
+                pendingQueue.addFirst(command);
+            }
+        }
+        batched.clear();
+        // clean the reply queue
+        fail(repliesQueue, written, "Connection closed");
+        // the batched commands are the last ones of the reply queue, they were replayed above
+        while (repliesQueue.poll() != null) {
+        }
+
+        if (pingTimer != -1) {
+            vertx.cancelTimer(pingTimer);
+            pingTimer = -1;
+        }
+
+        reconnect();
+    }
+
+    // Schedule the next connection attempt after a jittered exponential backoff
+    private void reconnect() {
+        if (closed || reconnectTimer != -1) {
+            return;
+        }
+
+        // "equal jitter": half of the delay is fixed, the other half random, so that the clients do not reconnect in sync
+        final long delay = Math.min(maxReconnectDelay, reconnectDelay << Math.min(attempts, 20));
+        final long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+
+        reconnectTimer = vertx.setTimer(Math.max(1, jittered), new Handler<Long>() {
+            @Override
+            public void handle(Long event) {
+                reconnectTimer = -1;
+                connect(null);
+            }
+        });
+    }
+
+    // PING the connection when nothing was received for pingInterval, a dead socket then times out like any command
+    private void startPing() {
+        if (pingInterval <= 0) {
+            return;
+        }
+
+        pingTimer = vertx.setPeriodic(pingInterval, new Handler<Long>() {
+            @Override
+            public void handle(Long event) {
+                if (state == State.CONNECTED && repliesQueue.isEmpty() && pendingQueue.isEmpty() &&
+                        !multi && !watching && System.currentTimeMillis() - lastRead >= pingInterval) {
+                    send(new Command("ping").setTimeout(pingInterval).setHandler(new Handler<Reply>() {
+                        @Override
+                        public void handle(Reply reply) {
+                            if (reply.getType() == '-') {
+                                logger.warn("Health check failed: " + ((ErrorReply) reply).data());
+                            }
+                        }
+                    }));
+                }
+            }
+        });
+    }
+
     // Redis 'subscribe', 'unsubscribe', 'psubscribe' and 'punsubscribe' commands can have multiple (including zero) repliesQueue
     // See http://redis.io/topics/pubsub
     // In all cases we want to have a handler to report errors
     void send(final Command command) {
+        if (command.getTimeout() > 0 && timeouts.schedule(command, System.currentTimeMillis()) && timer == -1) {
+            timer = vertx.setPeriodic(TimerWheel.TICK, new Handler<Long>() {
+                @Override
+                public void handle(Long event) {
+                    expire();
+                }
+            });
+        }
+
         switch (state) {
             case CONNECTED:
-                // The order read must match the order written, vertx guarantees
-                // that this is only called from a single thread.
-                command.writeTo(netSocket);
-                for (int i = 0; i < command.getExpectedReplies(); ++i) {
-                    repliesQueue.offer(command.getHandler());
+                // the commands already waiting go first
+                if (!handshaking && pendingQueue.isEmpty() && canWrite()) {
+                    dispatch(command);
+                } else {
+                    pend(command);
                 }
                 break;
             case DISCONNECTED:
-                logger.info("Got request when disconnected. Trying to connect.");
-                connect(new AsyncResultHandler<Void>() {
-                    public void handle(AsyncResult<Void> connection) {
-                        if (connection.succeeded()) {
-                            send(command);
-                        } else {
-                            command.getHandler().handle(new ErrorReply("Unable to connect"));
-                        }
-                    }
-                });
+                if (closed) {
+                    command.answered();
+                    cancelTimeout(command);
+                    command.getHandler().handle(new ErrorReply("Connection closed"));
+                    break;
+                }
+                // waits for the reconnection if one is scheduled, or for the address
+                if (pend(command) && reconnectTimer == -1 && host != null) {
+                    logger.info("Got request when disconnected. Trying to connect.");
+                    connect(null);
+                }
                 break;
             case CONNECTING:
                 logger.debug("Got send request while connecting. Will try again in a while.");
-                connectingQueue.offer(command);
+                pend(command);
+        }
+    }
+
+    private void dispatch(Command command) {
+        // The order read must match the order written, vertx guarantees
+        // that this is only called from a single thread.
+        write(command);
+        if (command.getExpectedReplies() > 0) {
+            repliesQueue.offer(command, command.getExpectedReplies(), System.nanoTime());
+        }
+    }
+
+    private boolean pend(Command command) {
+        if (maxPending > 0 && pendingQueue.size() >= maxPending) {
+            // failing fast is better than piling up commands until the heap is exhausted
+            command.answered();
+            cancelTimeout(command);
+            command.getHandler().handle(new ErrorReply("Overloaded"));
+            return false;
+        }
+        pendingQueue.offer(command);
+        return true;
+    }
+
+    // Fail the first count commands waiting for their replies, except the ones that already timed out
+    private void fail(ReplyQueue queue, int count, String error) {
+        Command command;
+        while (count-- > 0 && (command = queue.poll()) != null) {
+            if (!command.isExpired()) {
+                command.answered();
+                cancelTimeout(command);
+                command.getHandler().handle(new ErrorReply(error));
+            }
+        }
+    }
+
+    // Fail the commands waiting to be written, except the ones that already timed out
+    private void fail(Queue<Command> queue, String error) {
+        Command command;
+        while ((command = queue.poll()) != null) {
+            if (!command.isExpired()) {
+                command.answered();
+                cancelTimeout(command);
+                command.getHandler().handle(new ErrorReply(error));
+            }
+        }
+    }
+
+    private void expire() {
+        final long now = System.currentTimeMillis();
+        Command command = timeouts.expire(now);
+        boolean expired = false;
+
+        while (command != null) {
+            Command next = command.nextTimeout;
+            command.nextTimeout = null;
+
+            if (!command.isAnswered()) {
+                // the reply, if it ever comes, is dropped when it is received
+                command.expired();
+                expired = true;
+                try {
+                    command.getHandler().handle(new ErrorReply("Timeout"));
+                } catch (RuntimeException e) {
+                    logger.error("Reply handler failed", e);
+                }
+            }
+
+            command = next;
+        }
+
+        // the commands that timed out while waiting to be written no longer count against maxPending
+        if (expired && !pendingQueue.isEmpty()) {
+            for (int i = pendingQueue.size(); i > 0; i--) {
+                Command pending = pendingQueue.poll();
+                if (!pending.isExpired()) {
+                    pendingQueue.offer(pending);
+                }
+            }
+        }
+
+        // nothing received since the oldest command was sent, the server or the network is not answering anymore
+        Command oldest = repliesQueue.peek();
+        if (oldest != null && oldest.isExpired() && now - lastRead >= oldest.getTimeout() && state == State.CONNECTED) {
+            logger.error("No reply for " + (now - lastRead) + "ms, closing the connection");
+            netSocket.close();
+        }
+
+        stopTimerIfIdle();
+    }
+
+    // Answered, the wheel must not keep the command until its deadline
+    private void cancelTimeout(Command command) {
+        if (command.deadline != 0) {
+            timeouts.cancel(command);
+            stopTimerIfIdle();
+        }
+    }
+
+    // The timer also watches for a stalled socket as long as the oldest command written has timed out
+    private void stopTimerIfIdle() {
+        Command oldest = repliesQueue.peek();
+        if (timeouts.isEmpty() && (oldest == null || !oldest.isExpired())) {
+            stopTimer();
+        }
+    }
+
+    private void stopTimer() {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+    }
+
+    private boolean canWrite() {
+        return (maxInFlight <= 0 || repliesQueue.size() < maxInFlight) && !netSocket.writeQueueFull();
+    }
+
+    // Send the pending commands as long as the limits allow it
+    private void sendPending() {
+        while (state == State.CONNECTED && !handshaking && !pendingQueue.isEmpty() && canWrite()) {
+            Command command = pendingQueue.poll();
+            // timed out while waiting, not worth sending
+            if (!command.isExpired()) {
+                dispatch(command);
+            }
+        }
+    }
+
+    private void write(Command command) {
+        if (handshaking || command.length() >= maxBatchBytes || command.hasReferences()) {
+            // too large to be worth copying in the batch, keep the order of the writes. The handshake is not batched,
+            // only the commands of the callers are replayed if the socket is lost before the batch is written
+            flush();
+            command.writeTo(netSocket);
+            return;
+        }
+
+        if (batch == null) {
+            batch = new Buffer();
+        }
+        command.appendTo(batch);
+        batched.add(command);
+
+        if (batch.length() >= maxBatchBytes) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            // runs once the current event has been handled, after any other command it sends
+            vertx.runOnContext(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    flushScheduled = false;
+                    flush();
+                }
+            });
+        }
+    }
+
+    private void flush() {
+        if (batch != null) {
+            netSocket.write(batch);
+            batch = null;
+            batched.clear();
         }
     }
 
     public void handleReply(Reply reply) {
 
-        // Important to have this first - 'message' and 'pmessage' can be pushed at any moment, 
-        // so they must be filtered out before checking repliesQueue queue
-        if (handlePushedPubSubMessage(reply)) {
+        if (subscriptions == null) {
+            // command connection, RESP3 pushes are out of band (e.g. client tracking) and nothing waits for them
+            if (resp3 && reply.getType() == '>') {
+                return;
+            }
+        } else if (resp3) {
+            // RESP3 pushes are out of band, only subscription confirmations answer a command
+            if (reply.getType() == '>' && (handlePushedPubSubMessage(reply) || !isSubscriptionReply(reply))) {
+                return;
+            }
+        } else if (handlePushedPubSubMessage(reply)) {
+            // Important to have this first - 'message' and 'pmessage' can be pushed at any moment,
+            // so they must be filtered out before checking repliesQueue queue
             return;
         }
-        
-        Handler<Reply> handler = repliesQueue.poll();
-        if (handler != null) {
-            // handler waits for this response
-            handler.handle(reply);
+
+        Command command = repliesQueue.peek();
+        if (command != null) {
+            final long writtenAt = repliesQueue.peekWrittenAt();
+            if (repliesQueue.consume()) {
+                command.setLatency(System.nanoTime() - writtenAt);
+            }
+            // even for a command that timed out, the server did apply it
+            trackState(command, reply);
+            // handler waits for this response, a failing handler must not stop the replies that follow
+            if (!command.isExpired()) {
+                command.answered();
+                cancelTimeout(command);
+                try {
+                    command.getHandler().handle(reply);
+                } catch (RuntimeException e) {
+                    logger.error("Reply handler failed", e);
+                }
+            }
+            // room for the commands held by maxInFlight
+            if (!pendingQueue.isEmpty()) {
+                sendPending();
+            }
             return;
         }
 
         throw new RuntimeException("Received a non pub/sub message without reply handler waiting:"+reply.toString());
     }
 
+    // Follow the commands that change the state of the socket
+    private void trackState(Command command, Reply reply) {
+        final CommandInfo info = command.getInfo();
+        if (info == SELECT) {
+            if (reply.getType() == '+') {
+                // the next sockets keep the database
+                select = Integer.parseInt(command.argument(1));
+            }
+        } else if (info == MULTI) {
+            multi = reply.getType() == '+';
+        } else if (info == WATCH) {
+            watching |= reply.getType() == '+';
+        } else if (info == EXEC || info == DISCARD) {
+            multi = watching = false;
+        } else if (info == UNWATCH && !multi) {
+            watching = false;
+        }
+    }
+
+    // Element handler of the command waiting for the next reply, if it wants its multi bulk reply streamed
+    public Handler<Reply> getElementHandler() {
+        // with RESP2 'message' and 'pmessage' can be pushed at any moment, so never stream while subscribed
+        if (subscriptions != null && !resp3 && (subscriptions.channelSize() > 0 || subscriptions.patternSize() > 0)) {
+            return null;
+        }
+
+        Command command = repliesQueue.peek();
+        if (command != null && !command.isExpired() && command.getElementHandler() != null) {
+            // the elements are on their way to the stream, which cannot be cut short by a timeout
+            cancelTimeout(command);
+            return command.getElementHandler();
+        }
+
+        return null;
+    }
+
+    // Confirmation of 'subscribe', 'unsubscribe', 'psubscribe' or 'punsubscribe'
+    private static boolean isSubscriptionReply(Reply reply) {
+        Reply[] data = ((MultiBulkReply) reply).data();
+        if (data.length > 0 && data[0] instanceof BulkReply) {
+            BulkReply kind = (BulkReply) data[0];
+            return kind.contentEquals(SUBSCRIBE) || kind.contentEquals(UNSUBSCRIBE) ||
+                    kind.contentEquals(PSUBSCRIBE) || kind.contentEquals(PUNSUBSCRIBE);
+        }
+        return false;
+    }
+
     // Handle 'message' and 'pmessage' messages; returns true if the message was handled
     // Appropriate number of handlers for 'subscribe', 'unsubscribe', 'psubscribe' and 'punsubscribe' is inserted when these commands are sent
     // See http://redis.io/topics/pubsub
@@ -267,7 +864,7 @@ public class RedisConnection {
             if (data != null) {
                 // message
                 if (data.length == 3) {
-                    if (data[0] instanceof BulkReply && "message".equals(((BulkReply) data[0]).asString("UTF-8"))) {
+                    if (data[0] instanceof BulkReply && ((BulkReply) data[0]).contentEquals(MESSAGE)) {
                         String channel = ((BulkReply) data[1]).asString("UTF-8");
                         MessageHandler handler = subscriptions.getChannelHandler(channel);
                         if (handler != null)
@@ -281,7 +878,7 @@ public class RedisConnection {
                 } 
                 // pmessage
                 else if (data.length == 4) {
-                    if (data[0] instanceof BulkReply && "pmessage".equals(((BulkReply) data[0]).asString("UTF-8"))) {
+                    if (data[0] instanceof BulkReply && ((BulkReply) data[0]).contentEquals(PMESSAGE)) {
                         String pattern = ((BulkReply) data[1]).asString("UTF-8");
                         MessageHandler handler = subscriptions.getPatternHandler(pattern);
                         if (handler != null)
@@ -3,6 +3,7 @@ package io.vertx.redis;
 import io.vertx.redis.impl.RedisSubscriptions;
 import org.vertx.java.busmods.BusModBase;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
@@ -14,34 +15,43 @@ import java.nio.charset.Charset;
 @SuppressWarnings("unused")
 public class RedisMod extends BusModBase implements Handler<Message<JsonObject>> {
 
-    private RedisConnection redisClient;
+    // Precomputed reply bodies for the shared status replies, the event bus copies them on reply
+    private static final JsonObject OK_BODY = statusBody(StatusReply.OK);
+    private static final JsonObject QUEUED_BODY = statusBody(StatusReply.QUEUED);
+    private static final JsonObject PONG_BODY = statusBody(StatusReply.PONG);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private RedisPool redisClient;
+    // routes the commands by hash slot when the module is configured with cluster nodes
+    private RedisCluster redisCluster;
+    // follows the master when the module is configured with sentinels
+    private SentinelMonitor sentinelMonitor;
     private RedisSubscriptions subscriptions = new RedisSubscriptions();
 
     private String encoding;
     private Charset charset;
+    private boolean binary;
     private String baseAddress;
-
-    private enum ResponseTransform {
-        NONE,
-        ARRAY_TO_OBJECT,
-        INFO
-    }
+    private int streamChunkSize;
+    // default command timeout in milliseconds, 0 to wait forever
+    private long timeout;
 
     @Override
     public void start() {
         super.start();
 
-        final String host = getOptionalStringConfig("host", "localhost");
+        final JsonArray sentinels = getOptionalArrayConfig("sentinels", null);
+        // with sentinels the address of the master is not known yet
+        final String host = sentinels == null ? getOptionalStringConfig("host", "localhost") : null;
         final int port = getOptionalIntConfig("port", 6379);
         final String encoding = getOptionalStringConfig("encoding", null);
-        final boolean binary = getOptionalBooleanConfig("binary", false);
+        binary = getOptionalBooleanConfig("binary", false);
         // extra options that are nice to have
         final String auth = getOptionalStringConfig("auth", null);
         final int select = getOptionalIntConfig("select", 0);
-
-        if (binary) {
-            logger.warn("Binary mode is not implemented yet!!!");
-        }
+        // 2 (RESP2) or 3 (RESP3, requires Redis 6.0)
+        final int protocol = getOptionalIntConfig("protocol", 2);
 
         if (encoding != null) {
             this.encoding = encoding;
@@ -51,43 +61,134 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
 
         charset = Charset.forName(this.encoding);
 
-        redisClient = new RedisConnection(vertx, logger, host, port, auth, select, subscriptions);
-        redisClient.connect(null);
+        final JsonArray cluster = getOptionalArrayConfig("cluster", null);
+
+        if (cluster != null) {
+            // a pool per master, created as the nodes are found
+            redisCluster = new RedisCluster(vertx, logger, hostsOf(cluster), portsOf(cluster, 6379), new RedisCluster.PoolFactory() {
+                @Override
+                public RedisPool create(String host, int port) {
+                    return createPool(host, port, auth, select, protocol);
+                }
+            }, getOptionalLongConfig("clusterRefreshInterval", 10000), getOptionalIntConfig("maxPending", 10000));
+            redisCluster.start();
+        } else {
+            redisClient = createPool(host, port, auth, select, protocol);
+            redisClient.connect();
+
+            if (sentinels != null) {
+                sentinelMonitor = new SentinelMonitor(vertx, logger, getOptionalStringConfig("masterName", "mymaster"),
+                        hostsOf(sentinels), portsOf(sentinels, 26379), redisClient, getOptionalLongConfig("sentinelRefreshInterval", 10000));
+                sentinelMonitor.start();
+            }
+        }
         
+        streamChunkSize = getOptionalIntConfig("streamChunkSize", 1000);
+        timeout = getOptionalLongConfig("timeout", 0);
+
         baseAddress = getOptionalStringConfig("address", "io.vertx.mod-redis");
         eb.registerHandler(baseAddress, this);
     }
 
-    private ResponseTransform getResponseTransformFor(String command) {
-        if (command.equals("hgetall")) {
-            return ResponseTransform.ARRAY_TO_OBJECT;
+    @Override
+    public void stop() {
+        if (sentinelMonitor != null) {
+            sentinelMonitor.close();
+        }
+        if (redisClient != null) {
+            redisClient.close();
+        }
+        if (redisCluster != null) {
+            redisCluster.close();
+        }
+        super.stop();
+    }
+
+    private RedisPool createPool(String host, int port, String auth, int select, int protocol) {
+        final RedisConnection[] connections = new RedisConnection[Math.max(1, getOptionalIntConfig("poolSize", 1))];
+
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = createConnection(host, port, auth, select, protocol, null);
+        }
+
+        // opened with the first blocking command they get
+        final RedisConnection[] blocking = new RedisConnection[Math.max(0, getOptionalIntConfig("blockingPoolSize", 4))];
+
+        for (int i = 0; i < blocking.length; i++) {
+            blocking[i] = createConnection(host, port, auth, select, protocol, null);
+        }
+
+        // only the subscriber connection looks for pushed messages
+        final RedisConnection subscriber = createConnection(host, port, auth, select, protocol, subscriptions);
+
+        return new RedisPool(logger, connections, blocking, subscriber);
+    }
+
+    // "host:port" or "host" for the default port
+    private static String[] hostsOf(JsonArray addresses) {
+        final String[] hosts = new String[addresses.size()];
+        for (int i = 0; i < hosts.length; i++) {
+            String address = addresses.get(i);
+            int colon = address.lastIndexOf(':');
+            hosts[i] = colon == -1 ? address : address.substring(0, colon);
         }
-        if (command.equals("info")) {
-            return ResponseTransform.INFO;
+        return hosts;
+    }
+
+    private static int[] portsOf(JsonArray addresses, int defaultPort) {
+        final int[] ports = new int[addresses.size()];
+        for (int i = 0; i < ports.length; i++) {
+            String address = addresses.get(i);
+            int colon = address.lastIndexOf(':');
+            ports[i] = colon == -1 ? defaultPort : Integer.parseInt(address.substring(colon + 1));
         }
+        return ports;
+    }
 
-        return ResponseTransform.NONE;
+    private RedisConnection createConnection(String host, int port, String auth, int select, int protocol, RedisSubscriptions subscriptions) {
+        return new RedisConnection(vertx, logger, host, port, auth, select, protocol, subscriptions)
+                .setMaxBatchBytes(getOptionalIntConfig("maxBatchBytes", 64 * 1024))
+                .setMaxInFlight(getOptionalIntConfig("maxInFlight", 10000))
+                .setMaxPending(getOptionalIntConfig("maxPending", 10000))
+                .setReconnectDelay(getOptionalLongConfig("reconnectDelay", 100))
+                .setMaxReconnectDelay(getOptionalLongConfig("maxReconnectDelay", 5000))
+                .setReconnectAttempts(getOptionalIntConfig("reconnectAttempts", 10))
+                .setPingInterval(getOptionalLongConfig("pingInterval", 30000));
     }
-    
+
     @Override
     public void handle(final Message<JsonObject> message) {
 
-        String command = message.body().getString("command");
+        // requests serialized by RedisRequest skip the JSON conversion
+        if (((Message<?>) message).body() instanceof Buffer) {
+            handleRequest(message, (Buffer) ((Message<?>) message).body());
+            return;
+        }
+
+        final String command = message.body().getString("command");
         final JsonArray args = message.body().getArray("args");
 
         if (command == null) {
             sendError(message, "command must be specified");
             return;
-        } else {
-            command = command.toLowerCase();
         }
 
-        final ResponseTransform transform = getResponseTransformFor(command);
+        final CommandInfo info = CommandInfo.forName(command, charset);
+        final ResponseTransform transform = info.getTransform();
+
+        final Command redisCommand;
+        try {
+            redisCommand = new Command(info, args, charset, binary);
+        } catch (IllegalArgumentException e) {
+            // e.g. not Base64 in binary mode, better than sending a corrupted command
+            sendError(message, e.getMessage());
+            return;
+        }
 
         // subscribe/psubscribe and unsubscribe/punsubscribe commands can have multiple (including zero) replies
         int expectedReplies = 1;
 
-        switch (command) {
+        switch (info.getName()) {
             // argument "pattern" ["pattern"...]
             case "psubscribe":
                 // in this case we need also to register handlers
@@ -100,15 +201,20 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                     String pattern = (String) obj;
                     // compose the listening address as base + . + pattern
                     final String vertxChannel = baseAddress + "." + pattern;
-                    subscriptions.registerPatternSubscribeHandler(pattern, new MessageHandler() {
+                    final byte[] bytes = subscriptionBytes(pattern);
+                    subscriptions.registerPatternSubscribeHandler(subscriptionName(pattern), bytes, new MessageHandler() {
                         @Override
                         public void handle(String pattern, Reply[] replyData) {
                                 JsonObject replyMessage = new JsonObject();
                                 replyMessage.putString("status", "ok");
                                 JsonObject message = new JsonObject();
-                                message.putString("pattern", pattern);
-                                message.putString("channel", ((BulkReply) replyData[2]).asString(encoding));
-                                message.putString("message", ((BulkReply) replyData[3]).asString(encoding));
+                                if (binary) {
+                                    message.putBinary("pattern", ((BulkReply) replyData[1]).asBytes());
+                                } else {
+                                    message.putString("pattern", pattern);
+                                }
+                                putBulk(message, "channel", (BulkReply) replyData[2]);
+                                putBulk(message, "message", (BulkReply) replyData[3]);
                                 replyMessage.putObject("value", message);
                                 eb.send(vertxChannel, replyMessage);
                             }
@@ -127,14 +233,19 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                     String channel = (String) obj;
                     // compose the listening address as base + . + channel
                     final String vertxChannel = baseAddress + "." + channel;
-                    subscriptions.registerChannelSubscribeHandler(channel, new MessageHandler() {
+                    final byte[] bytes = subscriptionBytes(channel);
+                    subscriptions.registerChannelSubscribeHandler(subscriptionName(channel), bytes, new MessageHandler() {
                         @Override
                         public void handle(String channel, Reply[] replyData) {
                                 JsonObject replyMessage = new JsonObject();
                                 replyMessage.putString("status", "ok");
                                 JsonObject message = new JsonObject();
-                                message.putString("channel", channel);
-                                message.putString("message", ((BulkReply) replyData[2]).asString(encoding));
+                                if (binary) {
+                                    message.putBinary("channel", ((BulkReply) replyData[1]).asBytes());
+                                } else {
+                                    message.putString("channel", channel);
+                                }
+                                putBulk(message, "message", (BulkReply) replyData[2]);
                                 replyMessage.putObject("value", message);
                                 eb.send(vertxChannel, replyMessage);
                         }
@@ -152,7 +263,7 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                     expectedReplies = args.size();
                     for (Object obj : args) {
                         String pattern = (String) obj;
-                        subscriptions.unregisterPatternSubscribeHandler(pattern);
+                        subscriptions.unregisterPatternSubscribeHandler(subscriptionName(pattern));
                     }
                 }
                 break;
@@ -167,20 +278,326 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                     expectedReplies = args.size();
                     for (Object obj : args) {
                         String channel = (String) obj;
-                        subscriptions.unregisterChannelSubscribeHandler(channel);
+                        subscriptions.unregisterChannelSubscribeHandler(subscriptionName(channel));
                     }
                 }
                 break;
         }
 
-        redisClient.send(new Command(message.body(), charset).setExpectedReplies(expectedReplies).setHandler(new Handler<Reply>() {
+        // multi bulk replies can be streamed in chunks to another address
+        final String streamAddress = message.body().getString("stream");
+
+        redisCommand.setExpectedReplies(expectedReplies)
+                .setTimeout(message.body().getLong("timeout", timeoutFor(info)));
+
+        if (streamAddress != null) {
+            final ReplyStream stream = new ReplyStream(streamAddress);
+            redisCommand.setElementHandler(stream).setHandler(new Handler<Reply>() {
+                @Override
+                public void handle(Reply reply) {
+                    if ((reply.getType() == '*' || reply.getType() == '~') && ((MultiBulkReply) reply).data() != null) {
+                        stream.end(message, (MultiBulkReply) reply);
+                    } else {
+                        processReply(message, reply, transform);
+                    }
+                }
+            });
+        } else {
+            redisCommand.setHandler(new Handler<Reply>() {
+                @Override
+                public void handle(Reply reply) {
+                    processReply(message, reply, transform);
+                }
+            });
+        }
+
+        send(redisCommand);
+    }
+
+    private void handleRequest(final Message<JsonObject> message, Buffer request) {
+        final String command = Command.nameOf(request);
+
+        if (command == null) {
+            sendError(message, "request must be one array of bulk strings");
+            return;
+        }
+
+        final CommandInfo info = CommandInfo.forName(command, charset);
+
+        switch (info.getName()) {
+            case "psubscribe":
+            case "subscribe":
+            case "punsubscribe":
+            case "unsubscribe":
+                sendError(message, info.getName() + " must be sent as a JSON message");
+                return;
+        }
+
+        send(new Command(info, request).setTimeout(timeoutFor(info)).setHandler(new Handler<Reply>() {
             @Override
             public void handle(Reply reply) {
-                processReply(message, reply, transform);
+                processReply(message, reply, info.getTransform());
             }
         }));
     }
 
+    // The name the subscriber connection knows a channel or a pattern by: the bytes sent, decoded as UTF-8
+    private String subscriptionName(String arg) {
+        return binary ? new String(Command.decodeBase64(arg, 0), UTF8) : arg;
+    }
+
+    // The bytes sent for a channel or a pattern, to subscribe again after a reconnection
+    private byte[] subscriptionBytes(String arg) {
+        return binary ? Command.decodeBase64(arg, 0) : arg.getBytes(charset);
+    }
+
+    private void send(Command command) {
+        if (redisCluster != null) {
+            redisCluster.send(command);
+        } else {
+            redisClient.send(command);
+        }
+    }
+
+    // Blocking commands wait on purpose, the default timeout does not apply to them
+    private long timeoutFor(CommandInfo info) {
+        return info.is(CommandInfo.BLOCKING) ? 0 : timeout;
+    }
+
+    /**
+     * Forwards the elements of a multi bulk reply to the stream address in chunks of at most streamChunkSize
+     * elements. The last chunk is flagged with "end" and the command itself is answered with the number of elements.
+     */
+    private class ReplyStream implements Handler<Reply> {
+        private final String address;
+        private JsonArray chunk = new JsonArray();
+        private int count;
+        // type of the first element that could not be converted
+        private byte unsupported;
+
+        ReplyStream(String address) {
+            this.address = address;
+        }
+
+        @Override
+        public void handle(Reply reply) {
+            if (unsupported != 0) {
+                // keep consuming, the error is reported at the end
+                return;
+            }
+
+            if (!addReply(chunk, reply)) {
+                unsupported = reply.getType();
+                return;
+            }
+
+            count++;
+
+            if (chunk.size() == streamChunkSize) {
+                JsonObject replyMessage = new JsonObject();
+                replyMessage.putString("status", "ok");
+                replyMessage.putArray("value", chunk);
+                eb.send(address, replyMessage);
+                chunk = new JsonArray();
+            }
+        }
+
+        void end(Message<JsonObject> message, MultiBulkReply reply) {
+            // replies that were not streamed by the parser (e.g.: empty) are forwarded now
+            if (!reply.isStreamed()) {
+                for (Reply r : reply.data()) {
+                    handle(r);
+                }
+            }
+
+            JsonObject replyMessage = new JsonObject();
+            replyMessage.putBoolean("end", true);
+
+            if (unsupported != 0) {
+                String error = "Unknown sub message type in multibulk: " + unsupported;
+                replyMessage.putString("status", "error");
+                replyMessage.putString("message", error);
+                eb.send(address, replyMessage);
+                sendError(message, error);
+                return;
+            }
+
+            replyMessage.putString("status", "ok");
+            replyMessage.putArray("value", chunk);
+            eb.send(address, replyMessage);
+
+            replyMessage = new JsonObject();
+            replyMessage.putNumber("value", count);
+            sendOK(message, replyMessage);
+        }
+    }
+
+    // Convert an element of a multi bulk reply, returns false if the element type is not supported
+    private boolean addReply(JsonArray array, Reply reply) {
+        switch (reply.getType()) {
+            case '$':   // Bulk
+                BulkReply bulk = (BulkReply) reply;
+                if (binary && bulk.data() != null) {
+                    array.addBinary(bulk.asBytes());
+                } else {
+                    array.addString(bulk.asString(encoding));
+                }
+                return true;
+            case ':':   // Integer
+                array.addNumber(((IntegerReply) reply).data());
+                return true;
+            case '+':   // Status
+                array.addString(((StatusReply) reply).data());
+                return true;
+            case '_':   // Null
+                array.addString(null);
+                return true;
+            case '#':   // Boolean
+                array.addBoolean(((BooleanReply) reply).data());
+                return true;
+            case ',':   // Double
+                double d = ((DoubleReply) reply).data();
+                if (isJsonNumber(d)) {
+                    array.addNumber(d);
+                } else {
+                    array.addString(redisDouble(d));
+                }
+                return true;
+            case '(':   // Big number
+                array.addNumber(((BigNumberReply) reply).data());
+                return true;
+            case '*':   // MultiBulk
+            case '~':   // Set
+                Reply[] elements = ((MultiBulkReply) reply).data();
+                if (elements == null) {
+                    array.addString(null);
+                    return true;
+                }
+                JsonArray nestedArray = new JsonArray();
+                if (!addReplies(nestedArray, elements)) {
+                    return false;
+                }
+                array.addArray(nestedArray);
+                return true;
+            case '%':   // Map
+                JsonObject nestedObject = new JsonObject();
+                if (!putReplies(nestedObject, ((MapReply) reply).data())) {
+                    return false;
+                }
+                array.addObject(nestedObject);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean addReplies(JsonArray array, Reply[] replies) {
+        for (Reply r : replies) {
+            if (!addReply(array, r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Convert a value of a map reply, returns false if the value type is not supported
+    private boolean putReply(JsonObject json, String field, Reply reply) {
+        switch (reply.getType()) {
+            case '$':   // Bulk
+                putBulk(json, field, (BulkReply) reply);
+                return true;
+            case ':':   // Integer
+                json.putNumber(field, ((IntegerReply) reply).data());
+                return true;
+            case '+':   // Status
+                json.putString(field, ((StatusReply) reply).data());
+                return true;
+            case '_':   // Null
+                json.putString(field, null);
+                return true;
+            case '#':   // Boolean
+                json.putBoolean(field, ((BooleanReply) reply).data());
+                return true;
+            case ',':   // Double
+                double d = ((DoubleReply) reply).data();
+                if (isJsonNumber(d)) {
+                    json.putNumber(field, d);
+                } else {
+                    json.putString(field, redisDouble(d));
+                }
+                return true;
+            case '(':   // Big number
+                json.putNumber(field, ((BigNumberReply) reply).data());
+                return true;
+            case '*':   // MultiBulk
+            case '~':   // Set
+                Reply[] elements = ((MultiBulkReply) reply).data();
+                if (elements == null) {
+                    json.putString(field, null);
+                    return true;
+                }
+                JsonArray nestedArray = new JsonArray();
+                if (!addReplies(nestedArray, elements)) {
+                    return false;
+                }
+                json.putArray(field, nestedArray);
+                return true;
+            case '%':   // Map
+                JsonObject nestedObject = new JsonObject();
+                if (!putReplies(nestedObject, ((MapReply) reply).data())) {
+                    return false;
+                }
+                json.putObject(field, nestedObject);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Keys and values of a map reply in turn
+    private boolean putReplies(JsonObject json, Reply[] pairs) {
+        for (int i = 0; i < pairs.length; i+=2) {
+            if (!putReply(json, keyOf(pairs[i]), pairs[i+1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // JSON has no infinite nor NaN numbers
+    private static boolean isJsonNumber(double value) {
+        return !Double.isInfinite(value) && !Double.isNaN(value);
+    }
+
+    // The other doubles are given as strings, the way Redis writes them
+    private static String redisDouble(double value) {
+        return Double.isNaN(value) ? "nan" : value > 0 ? "inf" : "-inf";
+    }
+
+    // Map keys are always converted to strings
+    private String keyOf(Reply reply) {
+        if (reply instanceof BulkReply) {
+            return ((BulkReply) reply).asString(encoding);
+        }
+        return String.valueOf(reply.data());
+    }
+
+    // In binary mode bulk data is sent as is (Base64 in the JSON message) instead of being decoded
+    private void putBulk(JsonObject json, String field, BulkReply reply) {
+        if (binary && reply.data() != null) {
+            json.putBinary(field, reply.asBytes());
+        } else {
+            json.putString(field, reply.asString(encoding));
+        }
+    }
+
+    private static JsonObject statusBody(StatusReply reply) {
+        JsonObject body = new JsonObject();
+        body.putString("status", "ok");
+        body.putString("value", reply.data());
+        return body;
+    }
+
     private void processReply(Message<JsonObject> message, Reply reply, ResponseTransform transform) {
         JsonObject replyMessage;
         switch (reply.getType()) {
@@ -188,6 +605,18 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                 sendError(message, ((ErrorReply) reply).data());
                 return;
             case '+':   // Status
+                if (reply == StatusReply.OK) {
+                    message.reply(OK_BODY);
+                    return;
+                }
+                if (reply == StatusReply.QUEUED) {
+                    message.reply(QUEUED_BODY);
+                    return;
+                }
+                if (reply == StatusReply.PONG) {
+                    message.reply(PONG_BODY);
+                    return;
+                }
                 replyMessage = new JsonObject();
                 replyMessage.putString("value", ((StatusReply) reply).data());
                 sendOK(message, replyMessage);
@@ -223,14 +652,29 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                     }
                     replyMessage.putObject("value", value);
                 } else {
-                    replyMessage.putString("value", ((BulkReply) reply).asString(encoding));
+                    putBulk(replyMessage, "value", (BulkReply) reply);
                 }
                 sendOK(message, replyMessage);
                 return;
+            case '%': // Map
+                replyMessage = new JsonObject();
+                JsonObject map = new JsonObject();
+                if (!putReplies(map, ((MapReply) reply).data())) {
+                    sendError(message, "Unknown sub message type in map");
+                    return;
+                }
+                replyMessage.putObject("value", map);
+                sendOK(message, replyMessage);
+                return;
             case '*': // MultiBulk
+            case '~': // Set
+            case '>': // Push (subscription confirmations)
                 replyMessage = new JsonObject();
                 MultiBulkReply mbreply = (MultiBulkReply) reply;
-                if (transform == ResponseTransform.ARRAY_TO_OBJECT) {
+                if (mbreply.data() == null) {
+                    // null multi bulk (e.g.: blpop timeout or aborted exec)
+                    replyMessage.putArray("value", null);
+                } else if (transform == ResponseTransform.ARRAY_TO_OBJECT && reply.getType() == '*') {
                     JsonObject bulk = new JsonObject();
                     Reply[] mbreplyData = mbreply.data();
 
@@ -240,17 +684,9 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                             return;
                         }
                         BulkReply brKey = (BulkReply) mbreplyData[i];
-                        Reply brValue = mbreplyData[i+1];
-                        switch (brValue.getType()) {
-                            case '$':   // Bulk
-                                bulk.putString(brKey.asString(encoding), ((BulkReply) brValue).asString(encoding));
-                                break;
-                            case ':':   // Integer
-                                bulk.putNumber(brKey.asString(encoding), ((IntegerReply) brValue).data());
-                                break;
-                            default:
-                                sendError(message, "Unknown sub message type in multibulk: " + mbreplyData[i+1].getType());
-                                return;
+                        if (!putReply(bulk, brKey.asString(encoding), mbreplyData[i+1])) {
+                            sendError(message, "Unknown sub message type in multibulk: " + mbreplyData[i+1].getType());
+                            return;
                         }
 
                     }
@@ -258,16 +694,9 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                 } else {
                     JsonArray bulk = new JsonArray();
                     for (Reply r : mbreply.data()) {
-                        switch (r.getType()) {
-                            case '$':   // Bulk
-                                bulk.addString(((BulkReply) r).asString(encoding));
-                                break;
-                            case ':':   // Integer
-                                bulk.addNumber(((IntegerReply) r).data());
-                                break;
-                            default:
-                                sendError(message, "Unknown sub message type in multibulk: " + r.getType());
-                                return;
+                        if (!addReply(bulk, r)) {
+                            sendError(message, "Unknown sub message type in multibulk: " + r.getType());
+                            return;
                         }
                     }
                     replyMessage.putArray("value", bulk);
@@ -279,6 +708,14 @@ public class RedisMod extends BusModBase implements Handler<Message<JsonObject>>
                 replyMessage.putNumber("value", ((IntegerReply) reply).data());
                 sendOK(message, replyMessage);
                 return;
+            case '_':   // Null
+            case '#':   // Boolean
+            case ',':   // Double
+            case '(':   // Big number
+                replyMessage = new JsonObject();
+                putReply(replyMessage, "value", reply);
+                sendOK(message, replyMessage);
+                return;
             default:
                 sendError(message, "Unknown message type");
         }
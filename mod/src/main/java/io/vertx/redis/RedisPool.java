@@ -0,0 +1,261 @@
+package io.vertx.redis;
+
+import io.vertx.redis.reply.ErrorReply;
+import io.vertx.redis.reply.Reply;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Connections to the same server. A command goes to the connection with the fewest replies outstanding, so a slow
+ * command only delays the commands queued behind it on its own connection, except for the commands that depend on the
+ * state of a connection:
+ *
+ * <ul>
+ *     <li>from MULTI or WATCH until EXEC, DISCARD or UNWATCH every command goes to the connection of the transaction</li>
+ *     <li>SELECT and AUTH are sent to every command connection, the caller gets the reply of the last one. They are
+ *     refused in a transaction, which would leave the other connections behind</li>
+ * </ul>
+ *
+ * Blocking commands (BLPOP, XREAD...) go to a separate set of connections, opened as they are needed, so that they
+ * never hold the regular commands queued behind them until their timeout. They are not opened to change their database,
+ * it is selected once they are.
+ *
+ * Subscriptions live on a connection of their own, opened with the first subscribe command, so that the pushed
+ * messages never delay the replies of the regular commands.
+ */
+class RedisPool {
+
+    private final Logger logger;
+    private final RedisConnection[] connections;
+    // empty when blocking commands are sent to the regular connections
+    private final RedisConnection[] blocking;
+    private final RedisConnection subscriber;
+
+    // connection of the transaction in progress, null when there is none
+    private RedisConnection pinned;
+    // true between MULTI and EXEC or DISCARD, when UNWATCH is queued instead of ending the transaction
+    private boolean multi;
+    // commands of the module waiting for the transaction to end, when its connection is the only one
+    private final Queue<Command> afterTransaction = new ArrayDeque<>();
+
+    RedisPool(Logger logger, RedisConnection[] connections, RedisConnection[] blocking, RedisConnection subscriber) {
+        this.logger = logger;
+        this.connections = connections;
+        this.blocking = blocking;
+        this.subscriber = subscriber;
+    }
+
+    void connect() {
+        for (RedisConnection connection : connections) {
+            connection.connect(null);
+        }
+    }
+
+    /**
+     * Move the connections to another server, the regular connections are opened right away.
+     */
+    void setAddress(String host, int port) {
+        for (RedisConnection connection : connections) {
+            connection.setAddress(host, port);
+            connection.connect(null);
+        }
+        for (RedisConnection connection : blocking) {
+            connection.setAddress(host, port);
+        }
+        subscriber.setAddress(host, port);
+    }
+
+    void close() {
+        for (RedisConnection connection : connections) {
+            connection.close();
+        }
+        for (RedisConnection connection : blocking) {
+            connection.close();
+        }
+        subscriber.close();
+
+        Command command;
+        while ((command = afterTransaction.poll()) != null) {
+            command.answered();
+            command.getHandler().handle(new ErrorReply("Connection closed"));
+        }
+    }
+
+    void send(Command command) {
+        final String name = command.getInfo().getName();
+
+        switch (name) {
+            case "subscribe":
+            case "psubscribe":
+            case "unsubscribe":
+            case "punsubscribe":
+                // connects on first use
+                subscriber.send(command);
+                return;
+            case "select":
+            case "auth":
+                if (pinned != null) {
+                    command.answered();
+                    command.getHandler().handle(new ErrorReply(name.toUpperCase() + " is not allowed in a transaction"));
+                } else {
+                    broadcast(command);
+                }
+                return;
+        }
+
+        if (pinned == null && blocking.length > 0 && command.getInfo().is(CommandInfo.BLOCKING)) {
+            leastOutstanding(blocking).send(command);
+            return;
+        }
+
+        // blocking commands do not block in a transaction
+        RedisConnection connection = pinned != null ? pinned : leastOutstanding(connections);
+
+        switch (name) {
+            case "multi":
+                multi = true;
+                pinned = connection;
+                break;
+            case "watch":
+                pinned = connection;
+                break;
+            case "exec":
+            case "discard":
+                multi = false;
+                pinned = null;
+                break;
+            case "unwatch":
+                if (!multi) {
+                    pinned = null;
+                }
+                break;
+        }
+
+        connection.send(command);
+
+        // after the end of the transaction on the same connection
+        if (pinned == null) {
+            Command held;
+            while ((held = afterTransaction.poll()) != null) {
+                connection.send(held);
+            }
+        }
+    }
+
+    /**
+     * Send a command of the module itself (e.g. the slot map request of a cluster), never on the connection of a
+     * transaction in progress where it would be queued with the commands of the caller.
+     */
+    void sendOutsideTransaction(Command command) {
+        RedisConnection connection = leastOutstanding(connections, pinned);
+        if (connection != null) {
+            connection.send(command);
+        } else {
+            afterTransaction.offer(command);
+        }
+    }
+
+    /**
+     * Send a command redirected by an ASK error of a cluster node, ASKING must precede it on the same connection.
+     */
+    void asking(Command command) {
+        RedisConnection connection = blocking.length > 0 && command.getInfo().is(CommandInfo.BLOCKING) ?
+                leastOutstanding(blocking) : leastOutstanding(connections, pinned);
+
+        Command asking = new Command("asking").setHandler(new Handler<Reply>() {
+            @Override
+            public void handle(Reply reply) {
+                // an error is reported by the command itself, redirected again
+            }
+        });
+
+        if (connection != null) {
+            connection.send(asking);
+            connection.send(command);
+        } else {
+            // together on the connection of the transaction once it is over
+            afterTransaction.offer(asking);
+            afterTransaction.offer(command);
+        }
+    }
+
+    private static RedisConnection leastOutstanding(RedisConnection[] connections) {
+        return leastOutstanding(connections, null);
+    }
+
+    // The connection with the fewest replies outstanding other than except, null if there is none
+    private static RedisConnection leastOutstanding(RedisConnection[] connections, RedisConnection except) {
+        RedisConnection least = null;
+        int min = Integer.MAX_VALUE;
+
+        // ties go to the first connections, which keeps a light load on the same connection
+        for (int i = 0; i < connections.length && min > 0; i++) {
+            if (connections[i] == except) {
+                continue;
+            }
+            int outstanding = connections[i].outstanding();
+            if (outstanding < min) {
+                min = outstanding;
+                least = connections[i];
+            }
+        }
+
+        return least;
+    }
+
+    private void broadcast(final Command command) {
+        final int last = connections.length - 1;
+        final boolean select = command.getInfo().getName().equals("select");
+
+        if (select && blocking.length > 0) {
+            // the database is known to be valid once accepted, the blocking connections may be busy or not open
+            final Handler<Reply> handler = command.getHandler();
+            command.setHandler(new Handler<Reply>() {
+                @Override
+                public void handle(Reply reply) {
+                    if (reply.getType() == '+') {
+                        final int db = Integer.parseInt(command.argument(1));
+                        for (RedisConnection connection : blocking) {
+                            connection.select(db);
+                        }
+                    }
+                    handler.handle(reply);
+                }
+            });
+        }
+
+        if (last > 0 || blocking.length > 0) {
+            Buffer request = new Buffer(command.length());
+            command.appendTo(request);
+
+            // the blocking connections may be busy, the caller waits for a regular connection instead. The ones not
+            // open yet authenticate with the configured auth when they are
+            for (RedisConnection connection : blocking) {
+                if (!select && connection.isOpen()) {
+                    connection.send(copy(command, request));
+                }
+            }
+
+            for (int i = 0; i < last; i++) {
+                connections[i].send(copy(command, request));
+            }
+        }
+
+        connections[last].send(command);
+    }
+
+    private Command copy(Command command, Buffer request) {
+        return new Command(command.getInfo(), request).setHandler(new Handler<Reply>() {
+            @Override
+            public void handle(Reply reply) {
+                if (reply.getType() == '-') {
+                    logger.error(((ErrorReply) reply).data());
+                }
+            }
+        });
+    }
+}
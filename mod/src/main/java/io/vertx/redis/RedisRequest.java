@@ -0,0 +1,73 @@
+package io.vertx.redis;
+
+import org.vertx.java.core.buffer.Buffer;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A command built without the JSON intermediate. {@link #toBuffer()} serializes it to the protocol format, the buffer
+ * can then be sent to the module address as is and gets the same reply as the equivalent JSON message.
+ *
+ * Arguments follow the rules of the JSON messages: strings are encoded in UTF-8, byte arrays and buffers are sent as
+ * they are and numbers are written in decimal.
+ *
+ * @see RedisCommands
+ */
+public class RedisRequest {
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private final CommandInfo info;
+    private Object[] args;
+    private int size;
+
+    public RedisRequest(String command, Object... args) {
+        this.info = CommandInfo.forName(command, UTF8);
+        this.args = args == null ? new Object[0] : args;
+        this.size = this.args.length;
+    }
+
+    /**
+     * Append an argument.
+     */
+    public RedisRequest arg(Object value) {
+        if (size == args.length) {
+            args = Arrays.copyOf(args, Math.max(4, size * 2));
+        }
+        args[size++] = value;
+        return this;
+    }
+
+    /**
+     * Append several arguments.
+     */
+    public RedisRequest args(Object... values) {
+        for (Object value : values) {
+            arg(value);
+        }
+        return this;
+    }
+
+    public String getCommand() {
+        return info.getName();
+    }
+
+    /**
+     * @return the serialized request
+     */
+    public Buffer toBuffer() {
+        Buffer[] buffers = Command.encode(info, args, size, UTF8);
+
+        if (buffers.length == 1) {
+            return buffers[0];
+        }
+
+        // large arguments are referenced by the encoder, a message needs them in a single buffer
+        Buffer buffer = new Buffer(Command.length(buffers));
+        for (Buffer b : buffers) {
+            buffer.appendBuffer(b);
+        }
+        return buffer;
+    }
+}
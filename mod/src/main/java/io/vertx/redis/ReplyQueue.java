@@ -0,0 +1,106 @@
+package io.vertx.redis;
+
+/**
+ * The commands of a connection waiting for their replies, in the order they were written. A growable ring buffer of
+ * (command, replies remaining, time written) records in parallel arrays: queuing a command does not allocate once the
+ * arrays are large enough, and a command expecting several replies (e.g. SUBSCRIBE with several channels) takes a
+ * single record.
+ */
+final class ReplyQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // the capacity is a power of two, indexes wrap with the mask
+    private Command[] commands = new Command[INITIAL_CAPACITY];
+    private int[] remaining = new int[INITIAL_CAPACITY];
+    private long[] writtenAt = new long[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    void offer(Command command, int replies, long now) {
+        if (size == commands.length) {
+            grow();
+        }
+
+        final int tail = (head + size) & (commands.length - 1);
+        commands[tail] = command;
+        remaining[tail] = replies;
+        writtenAt[tail] = now;
+        size++;
+    }
+
+    /**
+     * @return the command waiting for the next reply, null if there is none
+     */
+    Command peek() {
+        return size == 0 ? null : commands[head];
+    }
+
+    /**
+     * @return when the command waiting for the next reply was written, in {@link System#nanoTime()} units
+     */
+    long peekWrittenAt() {
+        return writtenAt[head];
+    }
+
+    /**
+     * Account for a reply of the first command.
+     *
+     * @return true if it was the last reply of the command, which is removed
+     */
+    boolean consume() {
+        if (--remaining[head] > 0) {
+            return false;
+        }
+        poll();
+        return true;
+    }
+
+    /**
+     * Remove the first command, whatever the replies remaining.
+     */
+    Command poll() {
+        if (size == 0) {
+            return null;
+        }
+
+        final Command command = commands[head];
+        // not holding on to the command and its handler
+        commands[head] = null;
+        head = (head + 1) & (commands.length - 1);
+        size--;
+        return command;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of commands waiting, whatever the replies they expect
+     */
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        final int capacity = commands.length;
+        final Command[] newCommands = new Command[capacity * 2];
+        final int[] newRemaining = new int[capacity * 2];
+        final long[] newWrittenAt = new long[capacity * 2];
+
+        // unwrap, the first command moves to index 0
+        final int first = capacity - head;
+        System.arraycopy(commands, head, newCommands, 0, first);
+        System.arraycopy(commands, 0, newCommands, first, head);
+        System.arraycopy(remaining, head, newRemaining, 0, first);
+        System.arraycopy(remaining, 0, newRemaining, first, head);
+        System.arraycopy(writtenAt, head, newWrittenAt, 0, first);
+        System.arraycopy(writtenAt, 0, newWrittenAt, first, head);
+
+        commands = newCommands;
+        remaining = newRemaining;
+        writtenAt = newWrittenAt;
+        head = 0;
+    }
+}
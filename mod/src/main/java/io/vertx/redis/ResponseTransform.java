@@ -0,0 +1,10 @@
+package io.vertx.redis;
+
+/**
+ * Conversion applied by the module to the reply of a command before sending it back.
+ */
+public enum ResponseTransform {
+    NONE,
+    ARRAY_TO_OBJECT,
+    INFO
+}
@@ -0,0 +1,158 @@
+package io.vertx.redis;
+
+import io.vertx.redis.impl.MessageHandler;
+import io.vertx.redis.impl.RedisSubscriptions;
+import io.vertx.redis.reply.BulkReply;
+import io.vertx.redis.reply.MultiBulkReply;
+import io.vertx.redis.reply.Reply;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.logging.Logger;
+
+/**
+ * Follows the master of a Redis Sentinel deployment. The master address is asked to a sentinel with
+ * SENTINEL get-master-addr-by-name, periodically, and the +switch-master events of the sentinel move the connections
+ * of the pool as soon as a failover is announced. The sentinels are tried in turn until one answers.
+ */
+class SentinelMonitor {
+
+    private static final String SWITCH_MASTER = "+switch-master";
+    // delay before asking the next sentinel
+    private static final long RETRY_DELAY = 500;
+
+    private final Vertx vertx;
+    private final Logger logger;
+    private final String masterName;
+    private final String[] hosts;
+    private final int[] ports;
+    private final RedisPool pool;
+    private final long refreshInterval;
+
+    private final RedisSubscriptions subscriptions = new RedisSubscriptions();
+    // the sentinel in use, queried on one connection and listened to on another one
+    private int current = -1;
+    private RedisConnection query;
+    private RedisConnection events;
+    private long timer = -1;
+    private boolean closed;
+
+    SentinelMonitor(Vertx vertx, Logger logger, String masterName, String[] hosts, int[] ports, RedisPool pool, long refreshInterval) {
+        this.vertx = vertx;
+        this.logger = logger;
+        this.masterName = masterName;
+        this.hosts = hosts;
+        this.ports = ports;
+        this.pool = pool;
+        this.refreshInterval = refreshInterval;
+    }
+
+    void start() {
+        subscriptions.registerChannelSubscribeHandler(SWITCH_MASTER, new MessageHandler() {
+            @Override
+            public void handle(String channel, Reply[] replyData) {
+                // <master name> <old ip> <old port> <new ip> <new port>
+                String payload = replyData.length == 3 ? asString(replyData[2]) : null;
+                String[] fields = payload != null ? payload.split(" ") : new String[0];
+                if (fields.length != 5) {
+                    logger.warn("Invalid " + SWITCH_MASTER + " event: " + payload);
+                    return;
+                }
+
+                if (fields[0].equals(masterName)) {
+                    int port = parsePort(fields[4]);
+                    if (port == -1) {
+                        logger.warn("Invalid " + SWITCH_MASTER + " event: " + payload);
+                        return;
+                    }
+                    logger.info("Failover of " + masterName + " to " + fields[3] + ":" + port);
+                    pool.setAddress(fields[3], port);
+                }
+            }
+        });
+
+        next();
+        refresh();
+    }
+
+    // The text of a bulk reply, null for any other reply
+    private static String asString(Reply reply) {
+        return reply instanceof BulkReply ? ((BulkReply) reply).asString("UTF-8") : null;
+    }
+
+    // The port number, -1 if it is not one
+    private static int parsePort(String value) {
+        try {
+            int port = value != null ? Integer.parseInt(value) : -1;
+            return port > 0 && port <= 65535 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    void close() {
+        closed = true;
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        query.close();
+        events.close();
+    }
+
+    // Move to the next sentinel
+    private void next() {
+        current = (current + 1) % hosts.length;
+
+        if (query == null) {
+            // a single attempt, the next sentinel is tried instead
+            query = new RedisConnection(vertx, logger, hosts[current], ports[current], null, 0, null)
+                    .setReconnectAttempts(1);
+            // subscribes to +switch-master whenever it connects
+            events = new RedisConnection(vertx, logger, hosts[current], ports[current], null, 0, subscriptions);
+        } else {
+            query.setAddress(hosts[current], ports[current]);
+            events.setAddress(hosts[current], ports[current]);
+        }
+
+        events.connect(null);
+    }
+
+    private void refresh() {
+        Command command = new Command("sentinel", "get-master-addr-by-name", masterName)
+                .setTimeout(RETRY_DELAY * 2)
+                .setHandler(new Handler<Reply>() {
+                    @Override
+                    public void handle(Reply reply) {
+                        if (closed) {
+                            return;
+                        }
+
+                        Reply[] data = reply.getType() == '*' ? ((MultiBulkReply) reply).data() : null;
+                        String host = data != null && data.length == 2 ? asString(data[0]) : null;
+                        int port = host != null ? parsePort(asString(data[1])) : -1;
+
+                        if (port != -1) {
+                            pool.setAddress(host, port);
+                            schedule(refreshInterval);
+                        } else {
+                            logger.warn("No master " + masterName + " from sentinel " + hosts[current] + ":" +
+                                    ports[current] + ": " + reply.data());
+                            next();
+                            schedule(RETRY_DELAY);
+                        }
+                    }
+                });
+
+        query.send(command);
+    }
+
+    private void schedule(long delay) {
+        timer = vertx.setTimer(delay, new Handler<Long>() {
+            @Override
+            public void handle(Long event) {
+                timer = -1;
+                refresh();
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package io.vertx.redis;
+
+/**
+ * SET with its options, e.g. {@code RedisCommands.set("key", "value").ex(30).nx()}.
+ */
+public class SetRequest extends RedisRequest {
+
+    SetRequest(Object key, Object value) {
+        super("set", key, value);
+    }
+
+    /**
+     * Expire the key after the given number of seconds.
+     */
+    public SetRequest ex(long seconds) {
+        arg("ex");
+        arg(seconds);
+        return this;
+    }
+
+    /**
+     * Expire the key after the given number of milliseconds.
+     */
+    public SetRequest px(long milliseconds) {
+        arg("px");
+        arg(milliseconds);
+        return this;
+    }
+
+    /**
+     * Only set the key if it does not exist.
+     */
+    public SetRequest nx() {
+        arg("nx");
+        return this;
+    }
+
+    /**
+     * Only set the key if it already exists.
+     */
+    public SetRequest xx() {
+        arg("xx");
+        return this;
+    }
+}
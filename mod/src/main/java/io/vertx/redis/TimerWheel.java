@@ -0,0 +1,119 @@
+package io.vertx.redis;
+
+/**
+ * Hashed timer wheel for the command timeouts of a connection. Deadlines are hashed into slots of {@link #TICK}
+ * milliseconds and each tick only sweeps its own slot, so scheduling and expiring cost the same whatever the number of
+ * commands waiting and a single periodic timer drives all of them. Commands are linked through their own fields,
+ * scheduling does not allocate.
+ *
+ * Answered commands are cancelled by the caller, so that the wheel does not keep their handler and buffers until
+ * their deadline.
+ */
+final class TimerWheel {
+
+    static final long TICK = 100;
+    // a power of two, a turn of the wheel lasts 51.2 seconds, later deadlines wait for their turn in their slot
+    private static final int SLOTS = 512;
+
+    private final Command[] slots = new Command[SLOTS];
+    // next tick to sweep
+    private long tick = -1;
+    private int size;
+
+    /**
+     * @return true if the wheel was empty
+     */
+    boolean schedule(Command command, long now) {
+        command.deadline = now + command.getTimeout();
+
+        if (tick == -1) {
+            tick = now / TICK;
+        }
+
+        // the first tick at or after the deadline, never one already swept
+        final long t = Math.max((command.deadline + TICK - 1) / TICK, tick);
+        final int slot = (int) (t & (SLOTS - 1));
+
+        command.timeoutSlot = slot;
+        command.prevTimeout = null;
+        command.nextTimeout = slots[slot];
+        if (command.nextTimeout != null) {
+            command.nextTimeout.prevTimeout = command;
+        }
+        slots[slot] = command;
+
+        return size++ == 0;
+    }
+
+    /**
+     * Sweep the ticks up to now.
+     *
+     * @return the commands whose deadline has passed linked through nextTimeout, null if there are none
+     */
+    Command expire(long now) {
+        final long last = now / TICK;
+        Command expired = null;
+
+        // a late timer sweeps every slot at most once
+        if (last - tick >= SLOTS) {
+            tick = last - SLOTS + 1;
+        }
+
+        for (; tick <= last; tick++) {
+            final int slot = (int) (tick & (SLOTS - 1));
+            Command command = slots[slot];
+            Command kept = null;
+
+            while (command != null) {
+                Command next = command.nextTimeout;
+                command.prevTimeout = null;
+                if (command.deadline <= now) {
+                    command.deadline = 0;
+                    command.nextTimeout = expired;
+                    expired = command;
+                    size--;
+                } else {
+                    if (kept != null) {
+                        kept.prevTimeout = command;
+                    }
+                    command.nextTimeout = kept;
+                    kept = command;
+                }
+                command = next;
+            }
+
+            slots[slot] = kept;
+        }
+
+        return expired;
+    }
+
+    /**
+     * Remove a command before its deadline, does nothing if it is not scheduled.
+     */
+    void cancel(Command command) {
+        if (command.deadline == 0) {
+            return;
+        }
+
+        final Command prev = command.prevTimeout;
+        final Command next = command.nextTimeout;
+        if (prev != null) {
+            prev.nextTimeout = next;
+        } else {
+            slots[command.timeoutSlot] = next;
+        }
+        if (next != null) {
+            next.prevTimeout = prev;
+        }
+
+        command.deadline = 0;
+        command.prevTimeout = null;
+        command.nextTimeout = null;
+        size--;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
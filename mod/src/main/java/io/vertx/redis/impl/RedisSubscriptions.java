@@ -2,35 +2,55 @@ package io.vertx.redis.impl;
 
 import io.vertx.redis.impl.MessageHandler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class RedisSubscriptions {
 
     private final Map<String, MessageHandler> channelSubscribers = new HashMap<>();
     private final Map<String, MessageHandler> patternSubscribers = new HashMap<>();
+    // the bytes sent to subscribe, sent again after a reconnection (the names are decoded and may not encode back)
+    private final Map<String, byte[]> channelBytes = new HashMap<>();
+    private final Map<String, byte[]> patternBytes = new HashMap<>();
 
     public void registerChannelSubscribeHandler(String channel, MessageHandler messageHandler) {
         channelSubscribers.put(channel, messageHandler);
     }
 
+    public void registerChannelSubscribeHandler(String channel, byte[] bytes, MessageHandler messageHandler) {
+        channelSubscribers.put(channel, messageHandler);
+        channelBytes.put(channel, bytes);
+    }
+
     public void registerPatternSubscribeHandler(String pattern, MessageHandler messageHandler) {
         patternSubscribers.put(pattern, messageHandler);
     }
 
+    public void registerPatternSubscribeHandler(String pattern, byte[] bytes, MessageHandler messageHandler) {
+        patternSubscribers.put(pattern, messageHandler);
+        patternBytes.put(pattern, bytes);
+    }
+
     public void unregisterChannelSubscribeHandler(String channel) {
         if (channel == null) {
             channelSubscribers.clear();
+            channelBytes.clear();
         } else {
             channelSubscribers.remove(channel);
+            channelBytes.remove(channel);
         }
     }
 
     public void unregisterPatternSubscribeHandler(String pattern) {
         if (pattern == null) {
             patternSubscribers.clear();
+            patternBytes.clear();
         } else {
             patternSubscribers.remove(pattern);
+            patternBytes.remove(pattern);
         }
     }
 
@@ -42,6 +62,37 @@ public class RedisSubscriptions {
         return patternSubscribers.get(pattern);
     }
 
+    public Set<String> channels() {
+        return channelSubscribers.keySet();
+    }
+
+    public Set<String> patterns() {
+        return patternSubscribers.keySet();
+    }
+
+    /**
+     * @return the arguments to subscribe to the channels again, their bytes when they were registered with them
+     */
+    public List<Object> channelArguments() {
+        return arguments(channelSubscribers.keySet(), channelBytes);
+    }
+
+    /**
+     * @return the arguments to subscribe to the patterns again, their bytes when they were registered with them
+     */
+    public List<Object> patternArguments() {
+        return arguments(patternSubscribers.keySet(), patternBytes);
+    }
+
+    private static List<Object> arguments(Set<String> names, Map<String, byte[]> bytes) {
+        List<Object> arguments = new ArrayList<>(names.size());
+        for (String name : names) {
+            byte[] value = bytes.get(name);
+            arguments.add(value != null ? value : name);
+        }
+        return arguments;
+    }
+
     public int channelSize() {
         return channelSubscribers.size();
     }
@@ -0,0 +1,24 @@
+package io.vertx.redis.reply;
+
+import java.math.BigInteger;
+
+/**
+ * RESP3 big number.
+ */
+public class BigNumberReply implements Reply<BigInteger> {
+    private final BigInteger value;
+
+    public BigNumberReply(BigInteger value) {
+        this.value = value;
+    }
+
+    @Override
+    public BigInteger data() {
+        return value;
+    }
+
+    @Override
+    public byte getType() {
+        return '(';
+    }
+}
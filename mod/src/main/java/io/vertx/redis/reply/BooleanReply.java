@@ -0,0 +1,26 @@
+package io.vertx.redis.reply;
+
+/**
+ * RESP3 boolean.
+ */
+public class BooleanReply implements Reply<Boolean> {
+
+    public static final BooleanReply TRUE = new BooleanReply(true);
+    public static final BooleanReply FALSE = new BooleanReply(false);
+
+    private final Boolean value;
+
+    private BooleanReply(boolean value) {
+        this.value = value;
+    }
+
+    @Override
+    public Boolean data() {
+        return value;
+    }
+
+    @Override
+    public byte getType() {
+        return '#';
+    }
+}
@@ -1,14 +1,39 @@
 package io.vertx.redis.reply;
 
+import io.netty.buffer.ByteBuf;
 import org.vertx.java.core.buffer.Buffer;
 
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Bulk reply. When created by the {@link ReplyParser} the data is a view over the received bytes, it is only valid
+ * while the reply is being dispatched, handlers that need it afterwards must copy it.
+ */
 public class BulkReply implements Reply<Buffer> {
+
+    // Charsets where bytes below 0x80 are always ASCII characters
+    private static final Set<String> ASCII_COMPATIBLE = new HashSet<>(Arrays.asList("UTF-8", "ISO-8859-1", "US-ASCII", "windows-1252"));
+
+    private final ByteBuf bytes;
     private final Buffer buffer;
 
+    // last decoded form, most replies are decoded more than once with the same encoding
+    private String decoded;
+    private String decodedEncoding;
+
     public BulkReply(Buffer buffer) {
+        this.bytes = null;
         this.buffer = buffer;
     }
 
+    BulkReply(ByteBuf bytes) {
+        this.bytes = bytes;
+        this.buffer = new Buffer(bytes);
+    }
+
     @Override
     public Buffer data() {
         return buffer;
@@ -21,6 +46,94 @@ public class BulkReply implements Reply<Buffer> {
 
     public String asString(String encoding) {
         if (buffer == null) return null;
-        return buffer.toString(encoding);
+
+        if (decoded == null || !encoding.equals(decodedEncoding)) {
+            decoded = decode(encoding);
+            decodedEncoding = encoding;
+        }
+
+        return decoded;
+    }
+
+    public byte[] asBytes() {
+        if (buffer == null) return null;
+        return buffer.getBytes();
+    }
+
+    /**
+     * Compare the data with a constant without decoding it.
+     */
+    public boolean contentEquals(byte[] value) {
+        if (buffer == null) return false;
+
+        ByteBuf buf = byteBuf();
+        if (buf.readableBytes() != value.length) {
+            return false;
+        }
+
+        int offset = buf.readerIndex();
+        for (int i = 0; i < value.length; i++) {
+            if (buf.getByte(offset + i) != value[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void release() {
+        if (bytes != null) {
+            bytes.release();
+        }
+    }
+
+    private ByteBuf byteBuf() {
+        return bytes != null ? bytes : buffer.getByteBuf();
+    }
+
+    private String decode(String encoding) {
+        ByteBuf buf = byteBuf();
+        Charset charset = Charset.forName(encoding);
+
+        if (ASCII_COMPATIBLE.contains(charset.name())) {
+            String ascii = decodeAscii(buf);
+            if (ascii != null) {
+                return ascii;
+            }
+        }
+
+        return buf.toString(charset);
+    }
+
+    // Pure ASCII data decodes the same in all ASCII compatible charsets, skip the charset decoder for it.
+    // Returns null as soon as a byte >= 0x80 is found.
+    private static String decodeAscii(ByteBuf buf) {
+        final int length = buf.readableBytes();
+        final int offset = buf.readerIndex();
+        final char[] chars = new char[length];
+        byte b;
+
+        if (buf.hasArray()) {
+            final byte[] array = buf.array();
+            final int base = buf.arrayOffset() + offset;
+
+            for (int i = 0; i < length; i++) {
+                b = array[base + i];
+                if (b < 0) {
+                    return null;
+                }
+                chars[i] = (char) b;
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                b = buf.getByte(offset + i);
+                if (b < 0) {
+                    return null;
+                }
+                chars[i] = (char) b;
+            }
+        }
+
+        return new String(chars);
     }
 }
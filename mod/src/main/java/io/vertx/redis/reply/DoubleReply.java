@@ -0,0 +1,22 @@
+package io.vertx.redis.reply;
+
+/**
+ * RESP3 double.
+ */
+public class DoubleReply implements Reply<Double> {
+    private final Double value;
+
+    public DoubleReply(double value) {
+        this.value = value;
+    }
+
+    @Override
+    public Double data() {
+        return value;
+    }
+
+    @Override
+    public byte getType() {
+        return ',';
+    }
+}
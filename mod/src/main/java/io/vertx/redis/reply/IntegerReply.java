@@ -1,12 +1,35 @@
 package io.vertx.redis.reply;
 
 public class IntegerReply implements Reply<Long> {
-    private final long integer;
+
+    // Cache the replies for small numbers, counters, flags and collection sizes
+    // make most of the integer replies.
+    private static final int CACHE_LOW = -1;
+    private static final int CACHE_HIGH = 1024;
+    private static final IntegerReply[] cache = new IntegerReply[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new IntegerReply(i + CACHE_LOW);
+        }
+    }
+
+    private final Long integer;
 
     public IntegerReply(long integer) {
         this.integer = integer;
     }
 
+    /**
+     * Return a reply for the value, shared instances are used for small values.
+     */
+    public static IntegerReply valueOf(long integer) {
+        if (integer >= CACHE_LOW && integer <= CACHE_HIGH) {
+            return cache[(int) integer - CACHE_LOW];
+        }
+        return new IntegerReply(integer);
+    }
+
     @Override
     public byte getType() {
         return ':';
@@ -0,0 +1,11 @@
+package io.vertx.redis.reply;
+
+/**
+ * RESP3 map, data holds the keys and values in turn.
+ */
+public class MapReply extends MultiBulkReply {
+
+    public MapReply(int pairs) {
+        super((byte) '%', pairs * 2, null);
+    }
+}
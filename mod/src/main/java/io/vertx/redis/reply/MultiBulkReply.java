@@ -1,17 +1,75 @@
 package io.vertx.redis.reply;
 
+import org.vertx.java.core.Handler;
+
 /**
  * Nested replies.
  */
 public class MultiBulkReply implements Reply<Reply[]> {
+
+    private static final Reply[] EMPTY = new Reply[0];
+
+    /**
+     * Null multi bulk (e.g.: BLPOP timeout or aborted EXEC), data is null.
+     */
+    public static final MultiBulkReply NULL = new MultiBulkReply();
+
+    private final byte type;
     private final Reply[] replies;
+    private final int total;
+    // number of elements already parsed
+    private int count;
+    // when set the elements are handed over as they are parsed instead of being kept
+    private final Handler<Reply> elementHandler;
 
     public MultiBulkReply(int total) {
-        replies = new Reply[total];
+        this((byte) '*', total, null);
+    }
+
+    MultiBulkReply(int total, Handler<Reply> elementHandler) {
+        this((byte) '*', total, elementHandler);
+    }
+
+    private MultiBulkReply() {
+        this.type = '*';
+        this.replies = null;
+        this.total = -1;
+        this.elementHandler = null;
+    }
+
+    // RESP3 aggregates (maps, sets, pushes and attributes) share the array implementation
+    MultiBulkReply(byte type, int total, Handler<Reply> elementHandler) {
+        this.type = type;
+        this.replies = elementHandler != null ? EMPTY : new Reply[total];
+        this.total = total;
+        this.elementHandler = elementHandler;
+    }
+
+    void add(Reply reply) {
+        if (elementHandler != null) {
+            elementHandler.handle(reply);
+            count++;
+        } else {
+            replies[count++] = reply;
+        }
+    }
+
+    boolean isComplete() {
+        return count == total;
+    }
+
+    /**
+     * Streamed replies have delivered their elements to an element handler, data is always empty.
+     */
+    public boolean isStreamed() {
+        return elementHandler != null;
     }
 
-    void set(int pos, Reply reply) {
-        replies[pos] = reply;
+    /**
+     * Number of elements in the reply, including the ones that have been streamed, -1 for the null multi bulk.
+     */
+    public int size() {
+        return total;
     }
 
     @Override
@@ -21,6 +79,6 @@ public class MultiBulkReply implements Reply<Reply[]> {
 
     @Override
     public byte getType() {
-        return '*';
+        return type;
     }
 }
@@ -0,0 +1,22 @@
+package io.vertx.redis.reply;
+
+/**
+ * RESP3 null.
+ */
+public class NullReply implements Reply<Void> {
+
+    public static final NullReply NULL = new NullReply();
+
+    private NullReply() {
+    }
+
+    @Override
+    public Void data() {
+        return null;
+    }
+
+    @Override
+    public byte getType() {
+        return '_';
+    }
+}
@@ -0,0 +1,11 @@
+package io.vertx.redis.reply;
+
+/**
+ * RESP3 out of band push (pub/sub messages and subscription confirmations).
+ */
+public class PushReply extends MultiBulkReply {
+
+    public PushReply(int total) {
+        super((byte) '>', total, null);
+    }
+}
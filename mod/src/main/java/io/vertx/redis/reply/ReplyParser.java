@@ -1,20 +1,44 @@
 package io.vertx.redis.reply;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.vertx.redis.RedisConnection;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Incremental RESP2/RESP3 parser. The parser keeps its progress (current reply type, how far the current line has been
+ * scanned, remaining bulk bytes and the stack of multi bulk replies being filled) across calls to {@link #handle},
+ * so every byte received from the socket is examined only once no matter how the replies are split in chunks.
+ *
+ * Received chunks are never copied, they are kept as components of a composite buffer and bulk payloads are handed
+ * to {@link BulkReply} as retained views that are released once the reply has been dispatched.
+ */
 public class ReplyParser implements Handler<Buffer> {
 
-    private static class IncompleteReadBuffer extends Exception {
-        public IncompleteReadBuffer(String message) {
-            super(message);
-        }
-    }
+    private static final byte[] OK = "OK".getBytes();
+    private static final byte[] QUEUED = "QUEUED".getBytes();
+    private static final byte[] PONG = "PONG".getBytes();
 
-    private Buffer _buffer;
+    // received chunks that are not fully consumed yet, no limit on the components as consolidating means copying
+    private final CompositeByteBuf _buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE);
     private int _offset;
-    private final String _encoding = "utf-8";
+    private final Charset _encoding = Charset.forName("utf-8");
+
+    // type of the reply being parsed, 0 when waiting for a new reply
+    private byte _type;
+    // position from where the search for the end of line will resume
+    private int _scan;
+    // length of the bulk payload being read, -1 while reading a header line
+    private int _bulkLength = -1;
+    // multi bulk replies waiting for their elements, the innermost on top
+    private final Deque<MultiBulkReply> _stack = new ArrayDeque<>();
 
     private final RedisConnection client;
 
@@ -22,182 +46,297 @@ public class ReplyParser implements Handler<Buffer> {
         this.client = client;
     }
 
+    public void handle(Buffer buffer) {
+        append(buffer);
 
-    private Reply parseResult(byte type) throws IncompleteReadBuffer {
-        int start, end, offset;
-        int packetSize;
-
-        if (type == '+' || type == '-') {
-            // up to the delimiter
-            end = packetEndOffset() - 1;
-            start = _offset;
-
-            // include the delimiter
-            _offset = end + 2;
-
-            if (end > _buffer.length()) {
-                _offset = start;
-                throw new IncompleteReadBuffer("Wait for more data.");
-            }
+        Reply ret;
 
-            if (type == '+') {
-                return new StatusReply(_buffer.getString(start, end, _encoding));
-            } else {
-                return new ErrorReply(_buffer.getString(start, end, _encoding));
+        while ((ret = parseResult()) != null) {
+            try {
+                client.handleReply(ret);
+            } finally {
+                release(ret);
             }
-        } else if (type == ':') {
-            // up to the delimiter
-            end = packetEndOffset() - 1;
-            start = _offset;
+        }
 
-            // include the delimiter
-            _offset = end + 2;
+        discard();
+    }
 
-            if (end > _buffer.length()) {
-                _offset = start;
-                throw new IncompleteReadBuffer("Wait for more data.");
-            }
+    /**
+     * Release the data still buffered, the parser cannot be used afterwards.
+     */
+    public void close() {
+        _buffer.release();
+    }
 
-            // return the coerced numeric value
-            return new IntegerReply(Long.parseLong(_buffer.getString(start, end)));
-        } else if (type == '$') {
-            // set a rewind point, as the packet could be larger than the
-            // buffer in memory
-            offset = _offset - 1;
+    // Number of received chunks still held, for the tests
+    int chunks() {
+        return _buffer.numComponents();
+    }
 
-            packetSize = parsePacketSize();
+    /**
+     * Continue parsing from the current state.
+     *
+     * @return the next complete top level reply or null if more data is needed
+     */
+    private Reply parseResult() {
+        int end;
+        int packetSize;
+        Reply reply;
 
-            // packets with a size of -1 are considered null
-            if (packetSize == -1) {
-                return new BulkReply(null);
+        while (true) {
+            if (_type == 0) {
+                if (_offset >= _buffer.writerIndex()) {
+                    return null;
+                }
+                _type = _buffer.getByte(_offset++);
+                _scan = _offset;
             }
 
-            end = _offset + packetSize;
-            start = _offset;
+            if (_bulkLength != -1) {
+                // payload plus the delimiter
+                if (bytesRemaining() < _bulkLength + 2) {
+                    return null;
+                }
 
-            // set the offset to after the delimiter
-            _offset = end + 2;
+                switch (_type) {
+                    case '!':
+                        reply = new ErrorReply(_buffer.toString(_offset, _bulkLength, _encoding));
+                        break;
+                    case '=':
+                        // skip the 3 letters format and the colon (e.g.: "txt:")
+                        if (_bulkLength < 4 || _buffer.getByte(_offset + 3) != ':') {
+                            throw new RuntimeException("Invalid verbatim string");
+                        }
+                        reply = new BulkReply(slice(_offset + 4, _bulkLength - 4));
+                        break;
+                    default:
+                        reply = new BulkReply(slice(_offset, _bulkLength));
+                }
 
-            if (end > _buffer.length()) {
-                _offset = offset;
-                throw new IncompleteReadBuffer("Wait for more data.");
-            }
+                _offset += _bulkLength + 2;
+                _bulkLength = -1;
+            } else {
+                end = lineEndOffset();
 
-            return new BulkReply(_buffer.getBuffer(start, end));
-        } else if (type == '*') {
-            offset = _offset;
-            packetSize = parsePacketSize();
+                if (end == -1) {
+                    return null;
+                }
 
-            if (packetSize < 0) {
-                return null;
-            }
+                switch (_type) {
+                    case '+':
+                        reply = parseStatus(_offset, end);
+                        break;
+                    case '-':
+                        reply = new ErrorReply(_buffer.toString(_offset, end - _offset, _encoding));
+                        break;
+                    case ':':
+                        // return the coerced numeric value
+                        reply = IntegerReply.valueOf(parseLong(_offset, end));
+                        break;
+                    case '_':
+                        reply = NullReply.NULL;
+                        break;
+                    case '#':
+                        reply = _buffer.getByte(_offset) == 't' ? BooleanReply.TRUE : BooleanReply.FALSE;
+                        break;
+                    case ',':
+                        reply = new DoubleReply(parseDouble(_offset, end));
+                        break;
+                    case '(':
+                        reply = new BigNumberReply(new BigInteger(_buffer.toString(_offset, end - _offset, _encoding)));
+                        break;
+                    case '$':
+                    case '!':
+                    case '=':
+                        packetSize = parsePacketSize(end);
+                        // packets with a size of -1 are considered null
+                        if (packetSize == -1) {
+                            reply = new BulkReply((Buffer) null);
+                            break;
+                        }
+                        // the payload is read in the next iteration
+                        _offset = end + 2;
+                        _bulkLength = packetSize;
+                        continue;
+                    case '*':
+                    case '~':
+                    case '%':
+                    case '>':
+                    case '|':
+                        packetSize = parsePacketSize(end);
+                        if (packetSize < 0) {
+                            reply = MultiBulkReply.NULL;
+                            break;
+                        }
+                        if (packetSize > 0) {
+                            // the elements are read in the next iterations
+                            _offset = end + 2;
+                            // top level arrays and sets can be streamed to the waiting command
+                            Handler<Reply> elementHandler = null;
+                            if (_stack.isEmpty() && (_type == '*' || _type == '~')) {
+                                elementHandler = client.getElementHandler();
+                            }
+                            _stack.push(aggregate(_type, packetSize, elementHandler));
+                            _type = 0;
+                            continue;
+                        }
+                        reply = aggregate(_type, 0, null);
+                        break;
+                    default:
+                        throw new RuntimeException("Unsupported message type");
+                }
 
-            if (packetSize > bytesRemaining()) {
-                _offset = offset - 1;
-                throw new IncompleteReadBuffer("Wait for more data.");
+                // include the delimiter
+                _offset = end + 2;
             }
 
-            MultiBulkReply reply = new MultiBulkReply(packetSize);
+            _type = 0;
 
-            byte ntype;
-            Reply res;
-
-            for (int i = 0; i < packetSize; i++) {
-                ntype = _buffer.getByte(_offset++);
-
-                if (_offset > _buffer.length()) {
-                    throw new IncompleteReadBuffer("Wait for more data.");
+            // fill the pending aggregate replies, completing them from the inside out
+            while (true) {
+                // attributes only describe the reply that follows them, they are dropped
+                if (reply != null && reply.getType() == '|') {
+                    release(reply);
+                    reply = null;
+                    break;
                 }
-                res = parseResult(ntype);
-                reply.set(i, res);
-            }
 
-            return reply;
-        }
-
-        throw new RuntimeException("Unsupported message type");
-    }
+                if (_stack.isEmpty()) {
+                    break;
+                }
 
-    public void handle(Buffer buffer) {
-        append(buffer);
+                MultiBulkReply parent = _stack.peek();
+                parent.add(reply);
 
-        byte type;
-        Reply ret;
-        int offset;
+                // streamed elements are not kept
+                if (parent.isStreamed()) {
+                    release(reply);
+                }
 
-        loop: while (true) {
-            offset = _offset;
-            try {
-                // at least 4 bytes: :1\r\n
-                if (bytesRemaining() < 4) {
+                if (!parent.isComplete()) {
+                    reply = null;
                     break;
                 }
 
-                type = _buffer.getByte(_offset++);
-
-                switch (type) {
-                    case '*':
-                        // set a rewind point. if a failure occurs,
-                        // wait for the next handle()/append() and try again
-                        offset = _offset - 1;
-                    case '+':
-                    case '-':
-                    case ':':
-                    case '$':
-                        ret = parseResult(type);
-
-                        if (ret == null) {
-                            break loop;
-                        }
+                reply = _stack.pop();
+            }
 
-                        client.handleReply(ret);
-                        break;
-                }
-            } catch (IncompleteReadBuffer err) {
-                // catch the error (not enough data), rewind, and wait
-                // for the next packet to appear
-                _offset = offset;
-                break;
+            if (reply != null) {
+                return reply;
             }
         }
     }
 
+    private static MultiBulkReply aggregate(byte type, int size, Handler<Reply> elementHandler) {
+        switch (type) {
+            case '%':
+                return new MapReply(size);
+            case '|':
+                // parsed as a map
+                return new MultiBulkReply(type, size * 2, null);
+            case '~':
+                return elementHandler != null ? new SetReply(size, elementHandler) : new SetReply(size);
+            case '>':
+                return new PushReply(size);
+            default:
+                return elementHandler != null ? new MultiBulkReply(size, elementHandler) : new MultiBulkReply(size);
+        }
+    }
+
     private void append(Buffer newBuffer) {
         if (newBuffer == null) {
             return;
         }
 
-        // first run
-        if (_buffer == null) {
-            _buffer = newBuffer;
+        ByteBuf chunk = newBuffer.getByteBuf();
 
+        if (!chunk.isReadable()) {
             return;
         }
 
-        // out of data
-        if (_offset >= _buffer.length()) {
-            _buffer = newBuffer;
-            _offset = 0;
+        _buffer.addComponent(chunk);
+        _buffer.writerIndex(_buffer.writerIndex() + chunk.readableBytes());
+    }
+
+    /**
+     * Drop the chunks that have been completely consumed, rebasing the offsets on the remaining data.
+     */
+    private void discard() {
+        final int consumed;
 
+        if (_offset >= _buffer.writerIndex()) {
+            consumed = _buffer.numComponents();
+        } else {
+            consumed = _buffer.toComponentIndex(_offset);
+        }
+
+        if (consumed == 0) {
             return;
         }
 
-        // very large packet
-        if (_offset > 0) {
-            _buffer = _buffer.getBuffer(_offset, _buffer.length());
+        // not using discardReadComponents as it does not rebase the indexes correctly
+        final int rebase = consumed == _buffer.numComponents() ? _buffer.writerIndex() : _buffer.toByteIndex(consumed);
+        final int length = _buffer.writerIndex() - rebase;
+
+        _buffer.removeComponents(0, consumed);
+        _buffer.setIndex(0, length);
+
+        _scan -= rebase;
+        _offset -= rebase;
+    }
+
+    /**
+     * Create a retained view over the received data, spanning several chunks if needed.
+     */
+    private ByteBuf slice(int index, int length) {
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final int first = _buffer.toComponentIndex(index);
+        final int last = _buffer.toComponentIndex(index + length - 1);
+
+        if (first == last) {
+            return _buffer.internalComponent(first).slice(index - _buffer.toByteIndex(first), length).retain();
         }
-        _buffer.appendBuffer(newBuffer);
 
-        _offset = 0;
+        CompositeByteBuf view = Unpooled.compositeBuffer(last - first + 1);
+
+        for (int i = first; i <= last; i++) {
+            ByteBuf component = _buffer.internalComponent(i);
+            int componentOffset = _buffer.toByteIndex(i);
+            int start = Math.max(index, componentOffset) - componentOffset;
+            int end = Math.min(index + length, componentOffset + component.capacity()) - componentOffset;
+
+            view.addComponent(component.slice(start, end - start).retain());
+        }
+
+        return view.writerIndex(length);
     }
 
-    private int parsePacketSize() throws IncompleteReadBuffer {
-        int end = packetEndOffset();
-        String value = _buffer.getString(_offset, end - 1, _encoding);
+    /**
+     * Release the views held by a reply once it has been dispatched.
+     */
+    private static void release(Reply reply) {
+        if (reply == null) {
+            return;
+        }
 
-        _offset = end + 1;
+        if (reply instanceof BulkReply) {
+            ((BulkReply) reply).release();
+        } else if (reply instanceof MultiBulkReply) {
+            Reply[] replies = ((MultiBulkReply) reply).data();
+            if (replies != null) {
+                for (Reply r : replies) {
+                    release(r);
+                }
+            }
+        }
+    }
 
-        long size = Long.parseLong(value);
+    private int parsePacketSize(int end) {
+        long size = parseLong(_offset, end);
 
         if (size > Integer.MAX_VALUE) {
             throw new RuntimeException("Cannot allocate more than " + Integer.MAX_VALUE + " bytes");
@@ -209,22 +348,110 @@ public class ReplyParser implements Handler<Buffer> {
         return (int) size;
     }
 
-    private int packetEndOffset() throws IncompleteReadBuffer {
-        int offset = _offset;
+    /**
+     * Decode an ASCII number straight from the received bytes, accumulating in the negative range so that
+     * Long.MIN_VALUE can be represented.
+     */
+    private long parseLong(int start, int end) {
+        boolean negative = false;
+        long value = 0;
+        int i = start;
+        byte b;
+
+        if (i < end && _buffer.getByte(i) == '-') {
+            negative = true;
+            i++;
+        }
+
+        if (i == end) {
+            throw new NumberFormatException("Empty number at offset " + start);
+        }
+
+        for (; i < end; i++) {
+            b = _buffer.getByte(i);
+
+            if (b < '0' || b > '9') {
+                throw new NumberFormatException("Invalid digit '" + (char) b + "' at offset " + i);
+            }
+
+            // out of range numbers must not wrap around
+            if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + (b - '0')) {
+                throw new NumberFormatException("Number out of range at offset " + start);
+            }
+
+            value = value * 10 - (b - '0');
+        }
+
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new NumberFormatException("Number out of range at offset " + start);
+        }
+
+        return negative ? value : -value;
+    }
+
+    private StatusReply parseStatus(int start, int end) {
+        if (matches(start, end, OK)) {
+            return StatusReply.OK;
+        }
+        if (matches(start, end, QUEUED)) {
+            return StatusReply.QUEUED;
+        }
+        if (matches(start, end, PONG)) {
+            return StatusReply.PONG;
+        }
+        return new StatusReply(_buffer.toString(start, end - start, _encoding));
+    }
 
-        while (_buffer.getByte(offset) != '\r' && _buffer.getByte(offset + 1) != '\n') {
-            offset++;
+    private boolean matches(int start, int end, byte[] value) {
+        if (end - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (_buffer.getByte(start + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            if (offset >= _buffer.length()) {
-                throw new IncompleteReadBuffer("didn't see LF after NL reading multi bulk count (" + offset + " => " + _buffer.length() + ", " + _offset + ")");
+    private double parseDouble(int start, int end) {
+        String value = _buffer.toString(start, end - start, _encoding);
+
+        switch (value) {
+            case "inf":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "nan":
+                return Double.NaN;
+            default:
+                return Double.parseDouble(value);
+        }
+    }
+
+    /**
+     * Look for the CRLF that terminates the current line, resuming from where the previous search stopped.
+     *
+     * @return the offset of the CR or -1 if the line is not complete yet
+     */
+    private int lineEndOffset() {
+        final int length = _buffer.writerIndex();
+
+        while (_scan < length) {
+            if (_buffer.getByte(_scan) == '\r') {
+                // the LF must be available too
+                if (_scan + 1 < length) {
+                    return _scan;
+                }
+                return -1;
             }
+            _scan++;
         }
 
-        offset++;
-        return offset;
+        return -1;
     }
 
     private int bytesRemaining() {
-        return (_buffer.length() - _offset) < 0 ? 0 : (_buffer.length() - _offset);
+        return (_buffer.writerIndex() - _offset) < 0 ? 0 : (_buffer.writerIndex() - _offset);
     }
 }
@@ -0,0 +1,17 @@
+package io.vertx.redis.reply;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * RESP3 set.
+ */
+public class SetReply extends MultiBulkReply {
+
+    public SetReply(int total) {
+        super((byte) '~', total, null);
+    }
+
+    SetReply(int total, Handler<Reply> elementHandler) {
+        super((byte) '~', total, elementHandler);
+    }
+}
@@ -1,6 +1,12 @@
 package io.vertx.redis.reply;
 
 public class StatusReply implements Reply<String> {
+
+    // Shared instances for the most common statuses, the parser recognizes them without decoding
+    public static final StatusReply OK = new StatusReply("OK");
+    public static final StatusReply QUEUED = new StatusReply("QUEUED");
+    public static final StatusReply PONG = new StatusReply("PONG");
+
     private final String status;
 
     public StatusReply(String status) {
@@ -30,6 +30,9 @@ class GRedisClientTester extends TestVerticle {
         config.putString('host', 'localhost')
         config.putNumber('port', 6379)
         config.putString('encoding', 'ISO-8859-1')
+        config.putNumber('streamChunkSize', 2)
+        // small enough for the bursts of the tests to be split in several writes
+        config.putNumber('maxBatchBytes', 1024)
 
         container.deployModule(System.getProperty('vertx.modulename'), config, 1, new AsyncResultHandler<String>() {
             @Override
@@ -209,6 +212,67 @@ class GRedisClientTester extends TestVerticle {
         }
     }
 
+    @Test
+    void testBlpopTimeout() {
+        def list1 = makeKey()
+        def mykey = makeKey()
+
+        redis([command: 'blpop', args: [list1, 1]]) { reply0 ->
+            // null multi bulk
+            assertNullValue(reply0)
+
+            // the connection keeps working after the null reply
+            redis([command: 'set', args: [mykey, 'Hello']]) { reply1 ->
+                redis([command: 'get', args: [mykey]]) { reply2 ->
+                    assertStringValue('Hello', reply2)
+                    testComplete()
+                }
+            }
+        }
+    }
+
+    @Test
+    void testBlpopDoesNotStall() {
+        def list1 = makeKey()
+        def mykey = makeKey()
+        def done = false
+
+        redis([command: 'blpop', args: [list1, 1]]) { reply0 ->
+            // the set and get did not wait for the timeout
+            assertTrue(done)
+            testComplete()
+        }
+
+        redis([command: 'set', args: [mykey, 'Hello']]) { reply1 ->
+            redis([command: 'get', args: [mykey]]) { reply2 ->
+                assertStringValue('Hello', reply2)
+                done = true
+            }
+        }
+    }
+
+    @Test
+    void testBlpopMessageTimeout() {
+        def list1 = makeKey()
+        def mykey = makeKey()
+        def start = System.currentTimeMillis()
+
+        redis([command: 'blpop', args: [list1, 5], timeout: 300], true) { reply0 ->
+            assertEquals('Timeout', reply0.body.getString('message'))
+            assertTrue(System.currentTimeMillis() - start < 5000)
+
+            // the stalled connection is recycled, the next commands go through
+            redis([command: 'rpush', args: [list1, 'a']]) { reply1 ->
+                redis([command: 'blpop', args: [list1, 5]]) { reply2 ->
+                    assertArrayValue([list1, 'a'], reply2)
+                    redis([command: 'set', args: [mykey, 'Hello']]) { reply3 ->
+                        testComplete()
+                    }
+                }
+            }
+        }
+    }
+
     @Test
     void testBrpop() {
         def list1 = makeKey()
@@ -380,6 +444,18 @@ class GRedisClientTester extends TestVerticle {
         }
     }
 
+    @Test
+    void testEvalNested() {
+        redis([command: 'eval', args: ['return {1, {2, "a", {}}, "b"}', 0]]) { reply0 ->
+            def value = reply0.body.getArray('value')
+            assertEquals(3, value.size())
+            assertEquals(1L, value.get(0))
+            assertEquals([2L, 'a', []], value.get(1).toList())
+            assertEquals('b', value.get(2))
+            testComplete()
+        }
+    }
+
     @Test
     void testEvalsha() {
         testComplete()
@@ -614,6 +690,22 @@ class GRedisClientTester extends TestVerticle {
         }
     }
 
+    @Test
+    void testHgetallUpperCase() {
+        def myhash = makeKey()
+
+        redis([command: 'HSET', args: [myhash, 'field1', 'Hello']]) { reply0 ->
+            assertNumberValue(1, reply0)
+
+            // the reply transform does not depend on the case of the command
+            redis([command: 'HGETALL', args: [myhash]]) { reply1 ->
+                JsonObject obj = reply1.body.getObject('value')
+                assertEquals('Hello', obj.getField('field1'))
+                testComplete()
+            }
+        }
+    }
+
     @Test
     void testHincrby() {
         def myhash = makeKey()
@@ -793,6 +885,121 @@ class GRedisClientTester extends TestVerticle {
         }
     }
 
+    @Test
+    void testIncrBurst() {
+        def mykey = makeKey()
+        def bigkey = makeKey()
+        def big = 'x' * 4096
+        def expected = 1
+
+        // sent in the same event loop turn, the replies must come back in order
+        for (int i = 1; i <= 500; i++) {
+            redis([command: 'incr', args: [mykey]]) { reply ->
+                assertNumberValue(expected++, reply)
+            }
+            if (i == 250) {
+                // larger than maxBatchBytes, written on its own between the batches
+                redis([command: 'set', args: [bigkey, big]]) { reply ->
+                    assertEquals(251, expected)
+                }
+            }
+        }
+
+        redis([command: 'get', args: [mykey]]) { reply ->
+            assertEquals(501, expected)
+            assertStringValue('500', reply)
+
+            redis([command: 'strlen', args: [bigkey]]) { reply1 ->
+                assertNumberValue(4096, reply1)
+                testComplete()
+            }
+        }
+    }
+
+    @Test
+    void testPreEncoded() {
+        def mykey = makeKey()
+
+        eb.send(address, RedisCommands.set(mykey, 'myvalue').ex(30).nx().toBuffer(), new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply0) {
+                assertEquals('ok', reply0.body.getString('status'))
+
+                // same reply as the json message
+                redis([command: 'get', args: [mykey]]) { reply1 ->
+                    assertStringValue('myvalue', reply1)
+
+                    eb.send(address, RedisCommands.ttl(mykey).toBuffer(), new Handler<Message<JsonObject>>() {
+                        public void handle(Message<JsonObject> reply2) {
+                            assertTrue(reply2.body.getNumber('value') > 0)
+
+                            eb.send(address, RedisCommands.command('subscribe', mykey).toBuffer(), new Handler<Message<JsonObject>>() {
+                                public void handle(Message<JsonObject> reply3) {
+                                    assertEquals('error', reply3.body.getString('status'))
+                                    testComplete()
+                                }
+                            })
+                        }
+                    })
+                }
+            }
+        })
+    }
+
+    @Test
+    void testPreEncodedNotOneCommand() {
+        def mykey = makeKey()
+        def two = RedisCommands.set(mykey, 'myvalue').toBuffer().appendBuffer(RedisCommands.get(mykey).toBuffer())
+
+        eb.send(address, two, new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply0) {
+                assertEquals('error', reply0.body.getString('status'))
+                assertEquals('request must be one array of bulk strings', reply0.body.getString('message'))
+
+                // nothing was written, the connection still answers in order
+                redis([command: 'exists', args: [mykey]]) { reply1 ->
+                    assertNumberValue(0, reply1)
+                    testComplete()
+                }
+            }
+        })
+    }
+
+    @Test
+    void testOverloaded() {
+        def mykey = makeKey()
+        def config = new JsonObject([address: 'test.redis.overloaded', maxInFlight: 1, maxPending: 1])
+
+        container.deployModule(System.getProperty('vertx.modulename'), config, 1, new AsyncResultHandler<String>() {
+            @Override
+            void handle(AsyncResult<String> event) {
+                def ok = 0
+                def overloaded = 0
+
+                // one command in flight and one pending, the others are rejected
+                for (int i = 0; i < 20; i++) {
+                    eb.send('test.redis.overloaded', new JsonObject([command: 'incr', args: [mykey]]), new Handler<Message<JsonObject>>() {
+                        public void handle(Message<JsonObject> reply) {
+                            if (reply.body.getString('status') == 'ok') {
+                                ok++
+                            } else {
+                                assertEquals('Overloaded', reply.body.getString('message'))
+                                overloaded++
+                            }
+
+                            if (ok + overloaded == 20) {
+                                assertTrue(overloaded > 0)
+                                redis([command: 'get', args: [mykey]]) { reply1 ->
+                                    assertStringValue(String.valueOf(ok), reply1)
+                                    testComplete()
+                                }
+                            }
+                        }
+                    })
+                }
+            }
+        })
+    }
+
     @Test
     void testIncrby() {
         def mykey = makeKey()
@@ -994,6 +1201,43 @@ class GRedisClientTester extends TestVerticle {
         }
     }
 
+    @Test
+    void testLrangeStream() {
+        def mykey = makeKey()
+        def streamAddress = "${address}.stream.${makeKey()}".toString()
+        def received = []
+        def streamed = false
+        def replied = false
+
+        eb.registerHandler(streamAddress, new Handler<Message<JsonObject>>() {
+            @Override
+            void handle(Message<JsonObject> chunk) {
+                assertEquals('ok', chunk.body.getString('status'))
+                // chunks hold at most streamChunkSize elements
+                assertTrue(chunk.body.getArray('value').size() <= 2)
+                received.addAll(chunk.body.getArray('value').toList())
+                if (chunk.body.getBoolean('end', false)) {
+                    assertEquals(['one', 'two', 'three'], received)
+                    streamed = true
+                    if (replied) {
+                        testComplete()
+                    }
+                }
+            }
+        })
+
+        redis([command: 'rpush', args: [mykey, 'one', 'two', 'three']]) { reply0 ->
+            assertNumberValue(3, reply0)
+            redis([command: 'lrange', args: [mykey, 0, -1], stream: streamAddress]) { reply1 ->
+                assertNumberValue(3, reply1)
+                replied = true
+                if (streamed) {
+                    testComplete()
+                }
+            }
+        }
+    }
+
     @Test
     void testLrem() {
         def mykey = makeKey()
@@ -1872,6 +2116,30 @@ class GRedisClientTester extends TestVerticle {
         }
     }
 
+    @Test
+    void testZaddDoubleScores() {
+        def key = makeKey()
+        redis([command: 'zadd', args: [key, 2d, 'two', 2.5d, 'half', -1d, 'minus']]) { reply0 ->
+            assertNumberValue(3, reply0)
+            redis([command: 'zrange', args: [key, 0, -1, 'withscores']]) { reply1 ->
+                assertArrayValue(['minus', '-1', 'two', '2', 'half', '2.5'], reply1)
+                testComplete()
+            }
+        }
+    }
+
+    @Test
+    void testFractionalDoubles() {
+        def mykey = makeKey()
+        // the shortest digits that read back as the same double, Redis parses the exponent form
+        redis([command: 'set', args: [mykey, 1.5e-10d]]) { reply0 ->
+            redis([command: 'get', args: [mykey]]) { reply1 ->
+                assertStringValue('1.5E-10', reply1)
+                testComplete()
+            }
+        }
+    }
+
     @Test
     void testZcard() {
         def key = makeKey()
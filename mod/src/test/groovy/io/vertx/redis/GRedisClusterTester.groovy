@@ -0,0 +1,237 @@
+package io.vertx.redis
+
+import org.junit.Test
+import org.vertx.java.core.AsyncResult
+import org.vertx.java.core.AsyncResultHandler
+import org.vertx.java.core.Handler
+import org.vertx.java.core.buffer.Buffer
+import org.vertx.java.core.eventbus.EventBus
+import org.vertx.java.core.eventbus.Message
+import org.vertx.java.core.json.JsonArray
+import org.vertx.java.core.json.JsonObject
+import org.vertx.java.core.net.NetSocket
+import org.vertx.testtools.TestVerticle
+
+import static org.vertx.testtools.VertxAssert.*
+
+/**
+ * The module against a stand-in cluster node that answers CLUSTER SLOTS and redirects the commands with MOVED or ASK,
+ * the other node being the Redis server of the other tests.
+ */
+class GRedisClusterTester extends TestVerticle {
+
+    private static final int NODE_PORT = 17390
+    // slot of the keys tagged {foo}
+    private static final int FOO_SLOT = 12182
+
+    private EventBus eb
+
+    // slot ranges of the map: start, end, port
+    private List<List<Integer>> ranges = [[0, 16383, NODE_PORT]]
+    // answer to the commands with keys received by the stand-in node
+    private Closure<String> redirect = { '-ERR wrong node\r\n' }
+    private int redirected
+
+    void start() {
+        initialize(vertx)
+        eb = vertx.eventBus()
+
+        vertx.createNetServer().connectHandler(new Handler<NetSocket>() {
+            @Override
+            void handle(NetSocket socket) {
+                def input = new StringBuilder()
+                socket.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    void handle(Buffer buffer) {
+                        input.append(buffer.toString('UTF-8'))
+                        def request
+                        while ((request = parseRequest(input)) != null) {
+                            socket.write(answer(request))
+                        }
+                    }
+                })
+            }
+        }).listen(NODE_PORT, '127.0.0.1', new AsyncResultHandler() {
+            @Override
+            void handle(AsyncResult event) {
+                super.start()
+            }
+        })
+    }
+
+    // An array of bulk strings, null if not complete yet
+    private static List<String> parseRequest(StringBuilder input) {
+        def end = input.indexOf('\r\n')
+        if (end == -1) {
+            return null
+        }
+
+        def count = input.substring(1, end) as int
+        def request = []
+        def offset = end + 2
+
+        for (int i = 0; i < count; i++) {
+            end = input.indexOf('\r\n', offset)
+            if (end == -1) {
+                return null
+            }
+            def length = input.substring(offset + 1, end) as int
+            offset = end + 2
+            if (input.length() < offset + length + 2) {
+                return null
+            }
+            request << input.substring(offset, offset + length)
+            offset += length + 2
+        }
+
+        input.delete(0, offset)
+        return request
+    }
+
+    private static String bulk(String value) {
+        return '$' + value.length() + '\r\n' + value + '\r\n'
+    }
+
+    private String answer(List<String> request) {
+        switch (request[0].toLowerCase()) {
+            case 'ping':
+                return '+PONG\r\n'
+            case 'cluster':
+                assertEquals('slots', request[1])
+                def reply = '*' + ranges.size() + '\r\n'
+                for (List<Integer> range : ranges) {
+                    reply += '*3\r\n:' + range[0] + '\r\n:' + range[1] + '\r\n*2\r\n' + bulk('127.0.0.1') + ':' + range[2] + '\r\n'
+                }
+                return reply
+            default:
+                redirected++
+                return redirect.call()
+        }
+    }
+
+    private void deploy(String address, Closure<Void> closure) {
+        def config = new JsonObject()
+        config.putString('address', address)
+        config.putArray('cluster', new JsonArray(["127.0.0.1:${NODE_PORT}" as String]))
+
+        container.deployModule(System.getProperty('vertx.modulename'), config, 1, new AsyncResultHandler<String>() {
+            @Override
+            void handle(AsyncResult<String> event) {
+                assertTrue(event.succeeded())
+                closure.call()
+            }
+        })
+    }
+
+    void redis(String address, Map json, boolean fail = false, Closure<Void> closure) {
+        eb.send(address, new JsonObject(json), new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply) {
+                if (fail) {
+                    assertEquals('error', reply.body.getString('status'))
+                } else {
+                    assertEquals('ok', reply.body.getString('status'))
+                }
+                closure.call(reply)
+            }
+        })
+    }
+
+    @Test
+    void testHashSlot() {
+        assertEquals(12739, HashSlot.of('123456789'.getBytes('UTF-8')))
+        assertEquals(FOO_SLOT, HashSlot.of('foo'.getBytes('UTF-8')))
+        // only the hash tag is hashed
+        assertEquals(FOO_SLOT, HashSlot.of('{foo}.bar'.getBytes('UTF-8')))
+        assertEquals(HashSlot.of('{user1000}.following'.getBytes('UTF-8')), HashSlot.of('{user1000}.followers'.getBytes('UTF-8')))
+        // an empty tag is not a tag
+        assertFalse(HashSlot.of('foo{}{bar}'.getBytes('UTF-8')) == HashSlot.of('bar'.getBytes('UTF-8')))
+
+        assertEquals(FOO_SLOT, new Command('mset', '{foo}1', 'a', '{foo}2', 'b').slot())
+        assertEquals(Command.CROSS_SLOT, new Command('mset', 'foo', 'a', 'bar', 'b').slot())
+        assertEquals(FOO_SLOT, new Command('eval', 'return 1', 1, 'foo', 'bar').slot())
+        assertEquals(Command.NO_KEY, new Command('ping').slot())
+        assertEquals(FOO_SLOT, new Command(CommandInfo.forName('set', null), RedisCommands.set('foo', 'bar').ex(10).toBuffer()).slot())
+        testComplete()
+    }
+
+    @Test
+    void testMovableKeys() {
+        // the destination and the keys that follow numkeys, not the weights
+        assertEquals(FOO_SLOT, new Command('zunionstore', '{foo}dst', 2, '{foo}1', '{foo}2', 'WEIGHTS', 1, 2).slot())
+        assertEquals(Command.CROSS_SLOT, new Command('zunionstore', 'dst', 1, 'foo').slot())
+        assertEquals(Command.CROSS_SLOT, new Command('zinterstore', '{foo}dst', 2, 'foo', 'bar').slot())
+        assertEquals(FOO_SLOT, new Command('eval', 'return 1', 2, '{foo}1', '{foo}2', 'bar').slot())
+        assertEquals(FOO_SLOT, new Command('blmpop', 0, 2, '{foo}1', 'foo', 'LEFT').slot())
+        assertEquals(Command.CROSS_SLOT, new Command('bzmpop', 0, 2, 'foo', 'bar', 'MIN').slot())
+        // the keys follow STREAMS, then as many ids
+        assertEquals(FOO_SLOT, new Command('xread', 'COUNT', 10, 'STREAMS', '{foo}1', 'foo', '0', '0').slot())
+        assertEquals(Command.CROSS_SLOT, new Command('xread', 'STREAMS', 'foo', 'bar', '0', '0').slot())
+        assertEquals(FOO_SLOT, new Command('xreadgroup', 'GROUP', 'g', 'c', 'STREAMS', 'foo', '>').slot())
+        testComplete()
+    }
+
+    @Test
+    void testSlotRouting() {
+        def mykey = '{foo}' + UUID.randomUUID().toString()
+
+        // only the slot of the keys of the test is served by the Redis server
+        ranges = [[0, FOO_SLOT - 1, NODE_PORT], [FOO_SLOT, FOO_SLOT, 6379], [FOO_SLOT + 1, 16383, NODE_PORT]]
+
+        deploy('test.redis.cluster.slots') {
+            redis('test.redis.cluster.slots', [command: 'set', args: [mykey, 'Hello']]) { reply0 ->
+                redis('test.redis.cluster.slots', [command: 'mget', args: [mykey, '{foo}none']]) { reply1 ->
+                    assertEquals(new JsonArray(['Hello', null]), reply1.body.getArray('value'))
+                    redis('test.redis.cluster.slots', [command: 'mget', args: [mykey, 'bar']], true) { reply2 ->
+                        assertTrue(reply2.body.getString('message').startsWith('CROSSSLOT'))
+                        // the keys after numkeys go to the same node as the destination
+                        redis('test.redis.cluster.slots', [command: 'zunionstore', args: [mykey + 'z', 2, '{foo}none', '{foo}empty']]) { reply3 ->
+                            assertEquals(0, reply3.body.getNumber('value'))
+                            assertEquals(0, redirected)
+                            testComplete()
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMoved() {
+        def mykey = '{foo}' + UUID.randomUUID().toString()
+
+        // the map is out of date until the first command
+        redirect = {
+            ranges = [[0, 16383, 6379]]
+            "-MOVED ${FOO_SLOT} 127.0.0.1:6379\r\n" as String
+        }
+
+        deploy('test.redis.cluster.moved') {
+            redis('test.redis.cluster.moved', [command: 'set', args: [mykey, 'Hello']]) { reply0 ->
+                redis('test.redis.cluster.moved', [command: 'get', args: [mykey]]) { reply1 ->
+                    assertEquals('Hello', reply1.body.getString('value'))
+                    // the slot was moved with the first command
+                    assertEquals(1, redirected)
+                    testComplete()
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAsk() {
+        def mykey = '{foo}' + UUID.randomUUID().toString()
+
+        // the slot is being migrated, every command is redirected once
+        redirect = { "-ASK ${FOO_SLOT} 127.0.0.1:6379\r\n" as String }
+
+        deploy('test.redis.cluster.ask') {
+            redis('test.redis.cluster.ask', [command: 'set', args: [mykey, 'Hello']]) { reply0 ->
+                redis('test.redis.cluster.ask', [command: 'get', args: [mykey]]) { reply1 ->
+                    assertEquals('Hello', reply1.body.getString('value'))
+                    assertEquals(2, redirected)
+                    testComplete()
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.vertx.redis
+
+import org.junit.Test
+import org.vertx.java.core.AsyncResult
+import org.vertx.java.core.AsyncResultHandler
+import org.vertx.java.core.Handler
+import org.vertx.java.core.eventbus.EventBus
+import org.vertx.java.core.eventbus.Message
+import org.vertx.java.core.json.JsonObject
+import org.vertx.testtools.TestVerticle
+
+import static org.vertx.testtools.VertxAssert.*
+
+class GRedisPoolTester extends TestVerticle {
+
+    private final String address = 'test.redis.pool'
+    private EventBus eb
+
+    private void appReady() {
+        super.start()
+    }
+
+    void start() {
+        initialize(vertx)
+        eb = vertx.eventBus()
+        JsonObject config = new JsonObject()
+
+        config.putString('address', address)
+        config.putNumber('poolSize', 3)
+
+        container.deployModule(System.getProperty('vertx.modulename'), config, 1, new AsyncResultHandler<String>() {
+            @Override
+            void handle(AsyncResult<String> event) {
+                appReady()
+            }
+        })
+    }
+
+    void redis(Map json, boolean fail = false, Closure<Void> closure) {
+        eb.send(address, new JsonObject(json), new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply) {
+                if (fail) {
+                    assertEquals('error', reply.body.getString('status'))
+                } else {
+                    assertEquals('ok', reply.body.getString('status'))
+                }
+
+                closure.call(reply)
+            }
+        })
+    }
+
+    private static String makeKey() {
+        return UUID.randomUUID().toString()
+    }
+
+    @Test
+    void testBlockingDoesNotStall() {
+        def list = makeKey()
+        def mykey = makeKey()
+        def done = false
+
+        redis([command: 'blpop', args: [list, 2]]) { reply ->
+            // the set and get went through another connection
+            assertTrue(done)
+            testComplete()
+        }
+
+        redis([command: 'set', args: [mykey, 'Hello']]) { reply0 ->
+            redis([command: 'get', args: [mykey]]) { reply1 ->
+                assertEquals('Hello', reply1.body.getString('value'))
+                done = true
+            }
+        }
+    }
+
+    @Test
+    void testTransaction() {
+        def mykey = makeKey()
+
+        // sent in the same event loop turn, they must all reach the connection of the transaction
+        redis([command: 'multi', args: []]) { reply ->
+            assertEquals('OK', reply.body.getString('value'))
+        }
+        for (int i = 0; i < 10; i++) {
+            redis([command: 'incr', args: [mykey]]) { reply ->
+                assertEquals('QUEUED', reply.body.getString('value'))
+            }
+        }
+        redis([command: 'exec', args: []]) { reply ->
+            assertEquals(10, reply.body.getArray('value').size())
+            assertEquals(10, reply.body.getArray('value').get(9))
+            testComplete()
+        }
+    }
+
+    @Test
+    void testSelect() {
+        def mykey = makeKey()
+
+        redis([command: 'select', args: [1]]) { reply0 ->
+            redis([command: 'set', args: [mykey, 'one']]) { reply1 ->
+                redis([command: 'select', args: [0]]) { reply2 ->
+                    def remaining = 6
+
+                    // whatever the connection, the key is not in db 0
+                    for (int i = 0; i < 6; i++) {
+                        redis([command: 'exists', args: [mykey]]) { reply3 ->
+                            assertEquals(0, reply3.body.getNumber('value'))
+                            if (--remaining == 0) {
+                                redis([command: 'select', args: [1]]) { reply4 ->
+                                    redis([command: 'del', args: [mykey]]) { reply5 ->
+                                        assertEquals(1, reply5.body.getNumber('value'))
+                                        redis([command: 'select', args: [0]]) { reply6 ->
+                                            testComplete()
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSelectInTransaction() {
+        redis([command: 'multi']) { reply0 ->
+            // the other connections would stay on the previous database
+            redis([command: 'select', args: [1]], true) { reply1 ->
+                assertEquals('SELECT is not allowed in a transaction', reply1.body.getString('message'))
+                redis([command: 'discard']) { reply2 ->
+                    testComplete()
+                }
+            }
+        }
+    }
+}
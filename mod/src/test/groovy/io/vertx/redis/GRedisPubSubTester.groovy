@@ -110,6 +110,56 @@ class GRedisPubSubTester extends TestVerticle {
         }
     }
 
+    @Test
+    void testCommandsWhileSubscribed() {
+        def mykey = makeKey()
+
+        redis(subAddress, [command: 'subscribe', args: ['ch3']]) { subscribe ->
+            assertArray(['subscribe', 'ch3', 1], subscribe)
+
+            // regular commands do not go through the subscribed connection
+            redis(subAddress, [command: 'set', args: [mykey, 'Hello']]) { reply0 ->
+                redis(subAddress, [command: 'get', args: [mykey]]) { reply1 ->
+                    assertEquals('Hello', reply1.body.getString('value'))
+
+                    redis(subAddress, [command: 'unsubscribe', args: ['ch3']]) { unsubscribe ->
+                        assertArray(['unsubscribe', 'ch3', 0], unsubscribe)
+                        testComplete()
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testResubscribe() {
+        def message = makeKey()
+
+        eb.registerHandler("${subAddress}.ch4", new Handler<Message<JsonObject>>() {
+            @Override
+            void handle(Message<JsonObject> received) {
+                assertEquals(message, received.body.getField('value').getField('message'))
+                testComplete()
+            }
+        });
+
+        redis(subAddress, [command: 'subscribe', args: ['ch4']]) { subscribe ->
+            // drop the subscriber connection, the module reconnects and subscribes again
+            redis(pubAddress, [command: 'client kill', args: ['type', 'pubsub']]) { kill ->
+                assertNumber(1, kill)
+
+                vertx.setTimer(1000, new Handler<Long>() {
+                    @Override
+                    void handle(Long event) {
+                        redis(pubAddress, [command: 'publish', args: ['ch4', message]]) { publish ->
+                            assertNumber(1, publish)
+                        }
+                    }
+                })
+            }
+        }
+    }
+
     @Test
     void testPubSubPattern() {
 
@@ -0,0 +1,222 @@
+package io.vertx.redis
+
+import org.junit.Test
+import org.vertx.java.core.AsyncResult
+import org.vertx.java.core.AsyncResultHandler
+import org.vertx.java.core.Handler
+import org.vertx.java.core.buffer.Buffer
+import org.vertx.java.core.eventbus.EventBus
+import org.vertx.java.core.eventbus.Message
+import org.vertx.java.core.json.JsonArray
+import org.vertx.java.core.json.JsonObject
+import org.vertx.java.core.net.NetSocket
+import org.vertx.testtools.TestVerticle
+
+import static org.vertx.testtools.VertxAssert.*
+
+/**
+ * The module deployed with protocol 3 against a stand-in server, that either accepts HELLO 3 and answers with the
+ * RESP3 types or does not know HELLO like the servers before 6.0.
+ */
+class GRedisResp3Tester extends TestVerticle {
+
+    private static final int SERVER_PORT = 16390
+
+    private EventBus eb
+
+    // the stand-in speaks RESP3 once HELLO 3 is received, otherwise HELLO is an unknown command
+    private boolean helloSupported = true
+    private boolean resp3
+    private final List<String> received = []
+
+    void start() {
+        initialize(vertx)
+        eb = vertx.eventBus()
+
+        vertx.createNetServer().connectHandler(new Handler<NetSocket>() {
+            @Override
+            void handle(NetSocket socket) {
+                def input = new StringBuilder()
+                socket.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    void handle(Buffer buffer) {
+                        input.append(buffer.toString('UTF-8'))
+                        def request
+                        while ((request = parseRequest(input)) != null) {
+                            socket.write(answer(request))
+                        }
+                    }
+                })
+            }
+        }).listen(SERVER_PORT, '127.0.0.1', new AsyncResultHandler() {
+            @Override
+            void handle(AsyncResult event) {
+                super.start()
+            }
+        })
+    }
+
+    // An array of bulk strings, null if not complete yet
+    private static List<String> parseRequest(StringBuilder input) {
+        def end = input.indexOf('\r\n')
+        if (end == -1) {
+            return null
+        }
+
+        def count = input.substring(1, end) as int
+        def request = []
+        def offset = end + 2
+
+        for (int i = 0; i < count; i++) {
+            end = input.indexOf('\r\n', offset)
+            if (end == -1) {
+                return null
+            }
+            def length = input.substring(offset + 1, end) as int
+            offset = end + 2
+            if (input.length() < offset + length + 2) {
+                return null
+            }
+            request << input.substring(offset, offset + length)
+            offset += length + 2
+        }
+
+        input.delete(0, offset)
+        return request
+    }
+
+    private static String bulk(String value) {
+        return '$' + value.length() + '\r\n' + value + '\r\n'
+    }
+
+    private String answer(List<String> request) {
+        def command = request[0].toLowerCase()
+        received << command
+
+        switch (command) {
+            case 'hello':
+                if (!helloSupported) {
+                    return "-ERR unknown command 'HELLO'\r\n"
+                }
+                assertEquals('3', request[1])
+                resp3 = true
+                return '%2\r\n' + bulk('server') + bulk('redis') + bulk('proto') + ':3\r\n'
+            case 'ping':
+                return '+PONG\r\n'
+            case 'hgetall':
+                return resp3 ? '%1\r\n' + bulk('f') + bulk('v') : '*2\r\n' + bulk('f') + bulk('v')
+            case 'zscore':
+                return resp3 ? ',inf\r\n' : bulk('inf')
+            case 'zrange':
+                // with the scores
+                return resp3 ? '*2\r\n*2\r\n' + bulk('a') + ',-inf\r\n*2\r\n' + bulk('b') + ',1.5\r\n' : '*0\r\n'
+            case 'sismember':
+                return resp3 ? '#t\r\n' : ':1\r\n'
+            case 'smembers':
+                return resp3 ? '~2\r\n' + bulk('a') + bulk('b') : '*2\r\n' + bulk('a') + bulk('b')
+            case 'get':
+                return resp3 ? '_\r\n' : '$-1\r\n'
+            case 'lolwut':
+                return resp3 ? '=15\r\ntxt:Some string\r\n' : bulk('Some string')
+            case 'debug':
+                return resp3 ? '%2\r\n' + bulk('nan') + ',nan\r\n' + bulk('big') + '(3492890328409238509324850943850943825024385\r\n' : '*0\r\n'
+            default:
+                return "-ERR unknown command '${request[0]}'\r\n"
+        }
+    }
+
+    private void deploy(String address, Closure<Void> closure) {
+        def config = new JsonObject()
+        config.putString('address', address)
+        config.putString('host', '127.0.0.1')
+        config.putNumber('port', SERVER_PORT)
+        config.putNumber('protocol', 3)
+
+        container.deployModule(System.getProperty('vertx.modulename'), config, 1, new AsyncResultHandler<String>() {
+            @Override
+            void handle(AsyncResult<String> event) {
+                assertTrue(event.succeeded())
+                closure.call()
+            }
+        })
+    }
+
+    void redis(String address, Map json, Closure<Void> closure) {
+        eb.send(address, new JsonObject(json), new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply) {
+                assertEquals('ok', reply.body.getString('status'))
+                closure.call(reply)
+            }
+        })
+    }
+
+    @Test
+    void testHello() {
+        deploy('test.redis.resp3.hello') {
+            redis('test.redis.resp3.hello', [command: 'ping']) { reply0 ->
+                assertEquals('PONG', reply0.body.getString('value'))
+                // negotiated before any other command
+                assertEquals('hello', received[0])
+                assertTrue(resp3)
+                testComplete()
+            }
+        }
+    }
+
+    @Test
+    void testHelloNotSupported() {
+        helloSupported = false
+
+        deploy('test.redis.resp3.fallback') {
+            // still RESP2, hgetall is converted from the array
+            redis('test.redis.resp3.fallback', [command: 'hgetall', args: ['h']]) { reply0 ->
+                assertEquals(new JsonObject([f: 'v']), reply0.body.getObject('value'))
+                assertFalse(resp3)
+                testComplete()
+            }
+        }
+    }
+
+    @Test
+    void testTypes() {
+        deploy('test.redis.resp3.types') {
+            redis('test.redis.resp3.types', [command: 'hgetall', args: ['h']]) { reply0 ->
+                assertEquals(new JsonObject([f: 'v']), reply0.body.getObject('value'))
+                redis('test.redis.resp3.types', [command: 'sismember', args: ['s', 'a']]) { reply1 ->
+                    assertEquals(true, reply1.body.getBoolean('value'))
+                    redis('test.redis.resp3.types', [command: 'smembers', args: ['s']]) { reply2 ->
+                        assertEquals(new JsonArray(['a', 'b']), reply2.body.getArray('value'))
+                        redis('test.redis.resp3.types', [command: 'get', args: ['none']]) { reply3 ->
+                            assertNull(reply3.body.getString('value'))
+                            redis('test.redis.resp3.types', [command: 'lolwut']) { reply4 ->
+                                // the format of the verbatim string is dropped
+                                assertEquals('Some string', reply4.body.getString('value'))
+                                testComplete()
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDoublesThatAreNotJsonNumbers() {
+        deploy('test.redis.resp3.doubles') {
+            redis('test.redis.resp3.doubles', [command: 'zscore', args: ['z', 'a']]) { reply0 ->
+                assertEquals('inf', reply0.body.getString('value'))
+                redis('test.redis.resp3.doubles', [command: 'zrange', args: ['z', 0, -1, 'WITHSCORES']]) { reply1 ->
+                    JsonArray value = reply1.body.getArray('value')
+                    assertEquals('-inf', ((JsonArray) value.get(0)).get(1))
+                    assertEquals(1.5, ((JsonArray) value.get(1)).get(1))
+                    redis('test.redis.resp3.doubles', [command: 'debug', args: ['values']]) { reply2 ->
+                        JsonObject map = reply2.body.getObject('value')
+                        assertEquals('nan', map.getString('nan'))
+                        assertEquals('3492890328409238509324850943850943825024385', map.getNumber('big').toString())
+                        testComplete()
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.vertx.redis
+
+import org.junit.Test
+import org.vertx.java.core.AsyncResult
+import org.vertx.java.core.AsyncResultHandler
+import org.vertx.java.core.Handler
+import org.vertx.java.core.buffer.Buffer
+import org.vertx.java.core.eventbus.EventBus
+import org.vertx.java.core.eventbus.Message
+import org.vertx.java.core.json.JsonArray
+import org.vertx.java.core.json.JsonObject
+import org.vertx.java.core.net.NetSocket
+import org.vertx.testtools.TestVerticle
+
+import static org.vertx.testtools.VertxAssert.*
+
+/**
+ * The module against a stand-in sentinel that answers get-master-addr-by-name and publishes +switch-master, the
+ * master being the Redis server of the other tests.
+ */
+class GRedisSentinelTester extends TestVerticle {
+
+    private static final int SENTINEL_PORT = 26390
+
+    private EventBus eb
+
+    // address given by the stand-in sentinel
+    private String masterHost = '127.0.0.1'
+    private int masterPort = 6379
+    private final List<NetSocket> subscribers = []
+
+    void start() {
+        initialize(vertx)
+        eb = vertx.eventBus()
+
+        vertx.createNetServer().connectHandler(new Handler<NetSocket>() {
+            @Override
+            void handle(NetSocket socket) {
+                def input = new StringBuilder()
+                socket.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    void handle(Buffer buffer) {
+                        input.append(buffer.toString('UTF-8'))
+                        def request
+                        while ((request = parseRequest(input)) != null) {
+                            socket.write(answer(socket, request))
+                        }
+                    }
+                })
+                socket.closeHandler(new Handler<Void>() {
+                    @Override
+                    void handle(Void event) {
+                        subscribers.remove(socket)
+                    }
+                })
+            }
+        }).listen(SENTINEL_PORT, '127.0.0.1', new AsyncResultHandler() {
+            @Override
+            void handle(AsyncResult event) {
+                super.start()
+            }
+        })
+    }
+
+    // An array of bulk strings, null if not complete yet
+    private static List<String> parseRequest(StringBuilder input) {
+        def end = input.indexOf('\r\n')
+        if (end == -1) {
+            return null
+        }
+
+        def count = input.substring(1, end) as int
+        def request = []
+        def offset = end + 2
+
+        for (int i = 0; i < count; i++) {
+            end = input.indexOf('\r\n', offset)
+            if (end == -1) {
+                return null
+            }
+            def length = input.substring(offset + 1, end) as int
+            offset = end + 2
+            if (input.length() < offset + length + 2) {
+                return null
+            }
+            request << input.substring(offset, offset + length)
+            offset += length + 2
+        }
+
+        input.delete(0, offset)
+        return request
+    }
+
+    private static String bulk(String value) {
+        return '$' + value.length() + '\r\n' + value + '\r\n'
+    }
+
+    private String answer(NetSocket socket, List<String> request) {
+        switch (request[0].toLowerCase()) {
+            case 'ping':
+                return '+PONG\r\n'
+            case 'sentinel':
+                assertEquals('get-master-addr-by-name', request[1])
+                assertEquals('mymaster', request[2])
+                return '*2\r\n' + bulk(masterHost) + bulk(masterPort as String)
+            case 'subscribe':
+                subscribers << socket
+                return '*3\r\n' + bulk('subscribe') + bulk(request[1]) + ':1\r\n'
+            default:
+                return '-ERR unknown command\r\n'
+        }
+    }
+
+    private void switchMaster(String host, int port) {
+        def message = "mymaster ${masterHost} ${masterPort} ${host} ${port}" as String
+        masterHost = host
+        masterPort = port
+        for (NetSocket socket : subscribers) {
+            socket.write('*3\r\n' + bulk('message') + bulk('+switch-master') + bulk(message))
+        }
+    }
+
+    private void deploy(String address, Closure<Void> closure) {
+        def config = new JsonObject()
+        config.putString('address', address)
+        // the first sentinel is not running
+        config.putArray('sentinels', new JsonArray(['127.0.0.1:26399', "127.0.0.1:${SENTINEL_PORT}" as String]))
+        config.putString('masterName', 'mymaster')
+
+        container.deployModule(System.getProperty('vertx.modulename'), config, 1, new AsyncResultHandler<String>() {
+            @Override
+            void handle(AsyncResult<String> event) {
+                assertTrue(event.succeeded())
+                closure.call()
+            }
+        })
+    }
+
+    void redis(String address, Map json, Closure<Void> closure) {
+        eb.send(address, new JsonObject(json), new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply) {
+                assertEquals('ok', reply.body.getString('status'))
+                closure.call(reply)
+            }
+        })
+    }
+
+    @Test
+    void testMasterDiscovery() {
+        def mykey = UUID.randomUUID().toString()
+
+        deploy('test.redis.sentinel') {
+            redis('test.redis.sentinel', [command: 'set', args: [mykey, 'Hello']]) { reply0 ->
+                redis('test.redis.sentinel', [command: 'get', args: [mykey]]) { reply1 ->
+                    assertEquals('Hello', reply1.body.getString('value'))
+                    testComplete()
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSwitchMaster() {
+        def mykey = UUID.randomUUID().toString()
+
+        // nothing listens there, the commands wait for the failover
+        masterPort = 1
+
+        deploy('test.redis.failover') {
+            redis('test.redis.failover', [command: 'set', args: [mykey, 'Hello']]) { reply0 ->
+                assertEquals(6379, masterPort)
+                redis('test.redis.failover', [command: 'get', args: [mykey]]) { reply1 ->
+                    assertEquals('Hello', reply1.body.getString('value'))
+                    testComplete()
+                }
+            }
+
+            vertx.setTimer(500, new Handler<Long>() {
+                @Override
+                void handle(Long event) {
+                    switchMaster('127.0.0.1', 6379)
+                }
+            })
+        }
+    }
+}
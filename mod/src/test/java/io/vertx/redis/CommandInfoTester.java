@@ -0,0 +1,115 @@
+package io.vertx.redis;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Key positions of the command table.
+ */
+public class CommandInfoTester {
+
+    private static int[] keys(final String... request) {
+        return CommandInfo.get(request[0]).keys(new CommandInfo.Arguments() {
+            @Override
+            public int count() {
+                return request.length;
+            }
+
+            @Override
+            public String get(int i) {
+                return request[i];
+            }
+        });
+    }
+
+    @Test
+    public void testFixedKeys() {
+        assertArrayEquals(new int[] {1}, keys("get", "foo"));
+        assertArrayEquals(new int[] {1, 2, 3}, keys("mget", "a", "b", "c"));
+        assertArrayEquals(new int[] {1, 3}, keys("mset", "a", "1", "b", "2"));
+        // the timeout is not a key
+        assertArrayEquals(new int[] {1, 2}, keys("blpop", "a", "b", "0"));
+        assertArrayEquals(new int[0], keys("ping"));
+    }
+
+    @Test
+    public void testNumKeys() {
+        assertArrayEquals(new int[] {3, 4}, keys("eval", "return 1", "2", "a", "b", "arg"));
+        assertArrayEquals(new int[0], keys("evalsha", "sha", "0", "arg"));
+        // the destination, then the keys that follow numkeys but not the weights
+        assertArrayEquals(new int[] {1, 3, 4}, keys("zunionstore", "dst", "2", "a", "b", "WEIGHTS", "1", "2"));
+        assertArrayEquals(new int[] {1, 3}, keys("zinterstore", "dst", "1", "a"));
+        assertArrayEquals(new int[] {3, 4}, keys("blmpop", "0", "2", "a", "b", "LEFT"));
+        assertArrayEquals(new int[] {3}, keys("bzmpop", "0", "1", "a", "MIN", "COUNT", "2"));
+    }
+
+    @Test
+    public void testWrongNumKeys() {
+        // Redis replies with an error, only the fixed keys are known
+        assertArrayEquals(new int[0], keys("eval", "return 1", "three", "a"));
+        assertArrayEquals(new int[0], keys("eval", "return 1", "3", "a"));
+        assertArrayEquals(new int[] {1}, keys("zunionstore", "dst", "-1", "a"));
+    }
+
+    @Test
+    public void testStreams() {
+        assertArrayEquals(new int[] {4, 5}, keys("xread", "COUNT", "2", "STREAMS", "a", "b", "0", "0"));
+        assertArrayEquals(new int[] {2}, keys("xread", "streams", "a", "$"));
+        // a group named streams is not the option
+        assertArrayEquals(new int[] {7}, keys("xreadgroup", "GROUP", "streams", "consumer", "BLOCK", "0", "STREAMS", "a", ">"));
+        // a stream without its id
+        assertArrayEquals(new int[0], keys("xread", "STREAMS", "a", "b", "0"));
+    }
+
+    private static String data(final String... request) {
+        boolean[] data = CommandInfo.get(request[0]).data(new CommandInfo.Arguments() {
+            @Override
+            public int count() {
+                return request.length;
+            }
+
+            @Override
+            public String get(int i) {
+                return request[i];
+            }
+        });
+
+        StringBuilder positions = new StringBuilder();
+        for (int i = 0; i < data.length; i++) {
+            if (data[i]) {
+                positions.append(i);
+            }
+        }
+        return positions.toString();
+    }
+
+    @Test
+    public void testData() {
+        // the key and the value, not the options
+        assertEquals("12", data("set", "k", "v", "EX", "10"));
+        assertEquals("13", data("setex", "k", "10", "v"));
+        assertEquals("1234", data("mset", "a", "1", "b", "2"));
+        assertEquals("135", data("zadd", "k", "1", "a", "2", "b"));
+        // the options of zadd come before the first score
+        assertEquals("157", data("zadd", "k", "NX", "ch", "1", "a", "2", "b"));
+        assertEquals("15", data("zadd", "k", "XX", "INCR", "1", "a"));
+        assertEquals("1", data("lrange", "k", "0", "-1"));
+        assertEquals("12", data("publish", "ch", "message"));
+        assertEquals("12", data("subscribe", "a", "b"));
+        // the keys then the arguments of the script
+        assertEquals("345", data("eval", "return 1", "1", "k", "arg1", "arg2"));
+        assertEquals("34", data("evalsha", "sha", "0", "arg1", "arg2"));
+        assertEquals("", data("ping"));
+    }
+
+    @Test
+    public void testUnknownCommand() {
+        CommandInfo info = CommandInfo.forName("FOO.BAR", Charset.forName("UTF-8"));
+        assertEquals("foo.bar", info.getName());
+        assertNull(CommandInfo.get("foo.bar"));
+        assertSame(CommandInfo.get("get"), CommandInfo.forName("GET", Charset.forName("UTF-8")));
+    }
+}
@@ -0,0 +1,54 @@
+package io.vertx.redis;
+
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks of the requests sent already serialized.
+ */
+public class CommandTester {
+
+    private static String nameOf(String request) {
+        return Command.nameOf(new Buffer(request));
+    }
+
+    @Test
+    public void testNameOf() {
+        assertEquals("get", nameOf("*2\r\n$3\r\nget\r\n$3\r\nfoo\r\n"));
+        assertEquals("ping", nameOf("*1\r\n$4\r\nping\r\n"));
+        assertEquals("set", nameOf(RedisCommands.set("foo", "bar").ex(10).toBuffer().toString()));
+        // an empty argument
+        assertEquals("echo", nameOf("*2\r\n$4\r\necho\r\n$0\r\n\r\n"));
+    }
+
+    @Test
+    public void testNotOneCommand() {
+        // two commands
+        assertNull(nameOf("*1\r\n$4\r\nping\r\n*1\r\n$4\r\nping\r\n"));
+        // trailing bytes
+        assertNull(nameOf("*1\r\n$4\r\nping\r\n\r\n"));
+        // truncated
+        assertNull(nameOf("*2\r\n$3\r\nget\r\n$3\r\nfo"));
+        assertNull(nameOf("*2\r\n$3\r\nget\r\n"));
+        assertNull(nameOf("*2\r\n$3\r\nget\r\n$3"));
+        assertNull(nameOf(""));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertNull(nameOf("PING\r\n"));
+        assertNull(nameOf("*0\r\n"));
+        assertNull(nameOf("*-1\r\n"));
+        assertNull(nameOf("*1\n$4\r\nping\r\n"));
+        // a length that does not match the argument
+        assertNull(nameOf("*1\r\n$3\r\nping\r\n"));
+        assertNull(nameOf("*1\r\n$5\r\nping\r\n"));
+        assertNull(nameOf("*1\r\n$-4\r\nping\r\n"));
+        assertNull(nameOf("*1\r\n$x\r\nping\r\n"));
+        assertNull(nameOf("*1\r\n$99999999999\r\nping\r\n"));
+        // not a bulk string
+        assertNull(nameOf("*1\r\n+ping\r\n"));
+    }
+}
@@ -0,0 +1,203 @@
+package io.vertx.redis;
+
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.EventBus;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.testtools.TestVerticle;
+import org.vertx.testtools.VertxAssert;
+
+import java.util.UUID;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class RedisBinaryTester extends TestVerticle {
+
+    private final String address = "test.redis.binary";
+    private EventBus eb;
+
+    private void appReady() {
+        super.start();
+    }
+
+    public void start() {
+        VertxAssert.initialize(vertx);
+        eb = vertx.eventBus();
+        JsonObject config = new JsonObject();
+
+        config.putString("address", address);
+        config.putBoolean("binary", true);
+
+        container.deployModule(System.getProperty("vertx.modulename"), config, 1, new AsyncResultHandler<String>() {
+            @Override
+            public void handle(AsyncResult<String> event) {
+                appReady();
+            }
+        });
+    }
+
+    void redis(final JsonObject json, final Handler<Message<JsonObject>> handler) {
+        eb.send(address, json, new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply) {
+                assertEquals("ok", reply.body().getString("status"));
+                handler.handle(reply);
+            }
+        });
+    }
+
+    private static byte[] makeKey() {
+        return UUID.randomUUID().toString().getBytes();
+    }
+
+    private static JsonObject json(String command, JsonArray args) {
+        return new JsonObject().putString("command", command).putArray("args", args);
+    }
+
+    @Test
+    public void testGetSetBinary() {
+        final byte[] mykey = makeKey();
+        // not valid in any multi byte charset
+        final byte[] value = new byte[]{0, (byte) 0xff, (byte) 0xfe, '\r', '\n', (byte) 0x80, 127};
+
+        redis(json("set", new JsonArray().addBinary(mykey).addBinary(value)), new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> reply) {
+                assertEquals("OK", reply.body().getString("value"));
+
+                redis(json("get", new JsonArray().addBinary(mykey)), new Handler<Message<JsonObject>>() {
+                    @Override
+                    public void handle(Message<JsonObject> reply) {
+                        assertArrayEquals(value, reply.body().getBinary("value"));
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testLrangeBinary() {
+        final byte[] mykey = makeKey();
+        final byte[] value = new byte[]{(byte) 0xc3, (byte) 0x28};
+
+        redis(json("rpush", new JsonArray().addBinary(mykey).addBinary(value)), new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> reply) {
+                assertEquals(1, reply.body().getNumber("value").intValue());
+
+                redis(json("lrange", new JsonArray().addBinary(mykey).addNumber(0).addNumber(-1)), new Handler<Message<JsonObject>>() {
+                    @Override
+                    public void handle(Message<JsonObject> reply) {
+                        JsonArray array = reply.body().getArray("value");
+                        assertEquals(1, array.size());
+                        // binary elements are Base64 strings in the JSON array
+                        assertArrayEquals(value, new JsonObject().putValue("v", array.get(0)).getBinary("v"));
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testOptionsStayText() {
+        final byte[] mykey = makeKey();
+        final byte[] value = new byte[]{(byte) 0xff, 0};
+
+        // only the key and the value are Base64, EX and its number are sent as they are
+        redis(json("set", new JsonArray().addBinary(mykey).addBinary(value).addString("EX").addNumber(100)), new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> reply) {
+                assertEquals("OK", reply.body().getString("value"));
+
+                redis(json("ttl", new JsonArray().addBinary(mykey)), new Handler<Message<JsonObject>>() {
+                    @Override
+                    public void handle(Message<JsonObject> reply) {
+                        int ttl = reply.body().getNumber("value").intValue();
+                        assertTrue(ttl > 0 && ttl <= 100);
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testZaddOptions() {
+        final byte[] mykey = makeKey();
+        final byte[] member = new byte[]{(byte) 0xff, 'm'};
+
+        // the options shift the score and the member, only the member is Base64
+        redis(json("zadd", new JsonArray().addBinary(mykey).addString("NX").addString("CH").addNumber(1.5).addBinary(member)), new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> reply) {
+                assertEquals(1, reply.body().getNumber("value").intValue());
+
+                redis(json("zrange", new JsonArray().addBinary(mykey).addNumber(0).addNumber(-1)), new Handler<Message<JsonObject>>() {
+                    @Override
+                    public void handle(Message<JsonObject> reply) {
+                        JsonArray array = reply.body().getArray("value");
+                        assertEquals(1, array.size());
+                        assertArrayEquals(member, new JsonObject().putValue("v", array.get(0)).getBinary("v"));
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidBase64() {
+        final byte[] mykey = makeKey();
+
+        eb.send(address, json("set", new JsonArray().addBinary(mykey).addString("not Base64!")), new Handler<Message<JsonObject>>() {
+            public void handle(Message<JsonObject> reply) {
+                assertEquals("error", reply.body().getString("status"));
+
+                // nothing was sent
+                redis(json("exists", new JsonArray().addBinary(mykey)), new Handler<Message<JsonObject>>() {
+                    @Override
+                    public void handle(Message<JsonObject> reply) {
+                        assertEquals(0, reply.body().getNumber("value").intValue());
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testPubSubBinary() {
+        final byte[] channel = makeKey();
+        channel[0] = (byte) 0xff;
+        final byte[] message = new byte[]{0, (byte) 0x80, '\r', '\n'};
+        final JsonArray channelArg = new JsonArray().addBinary(channel);
+
+        // published to the address made of the Base64 form of the channel
+        eb.registerHandler(address + "." + channelArg.get(0), new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> received) {
+                JsonObject value = received.body().getObject("value");
+                assertArrayEquals(channel, value.getBinary("channel"));
+                assertArrayEquals(message, value.getBinary("message"));
+                testComplete();
+            }
+        });
+
+        redis(json("subscribe", channelArg), new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> reply) {
+                redis(json("publish", new JsonArray().addBinary(channel).addBinary(message)), new Handler<Message<JsonObject>>() {
+                    @Override
+                    public void handle(Message<JsonObject> reply) {
+                        assertEquals(1, reply.body().getNumber("value").intValue());
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package io.vertx.redis;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The ring buffer of the commands waiting for their replies, across wraparounds and growths.
+ */
+public class ReplyQueueTester {
+
+    private static List<Command> commands(int count) {
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            commands.add(new Command("get", "key" + i));
+        }
+        return commands;
+    }
+
+    // Take the commands out one reply at a time, checking their order, replies and write time
+    private static void drain(ReplyQueue queue, List<Command> commands, int from) {
+        for (int i = from; i < commands.size(); i++) {
+            assertSame("command " + i, commands.get(i), queue.peek());
+            assertEquals("command " + i, i, queue.peekWrittenAt());
+            // command i expects i % 3 + 1 replies
+            for (int reply = 0; reply < i % 3; reply++) {
+                assertFalse(queue.consume());
+                assertSame(commands.get(i), queue.peek());
+            }
+            assertTrue(queue.consume());
+            assertEquals(commands.size() - i - 1, queue.size());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+    }
+
+    private static void offer(ReplyQueue queue, List<Command> commands, int from, int to) {
+        for (int i = from; i < to; i++) {
+            queue.offer(commands.get(i), i % 3 + 1, i);
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        ReplyQueue queue = new ReplyQueue();
+        List<Command> commands = commands(10);
+        offer(queue, commands, 0, 10);
+        assertEquals(10, queue.size());
+        drain(queue, commands, 0);
+    }
+
+    @Test
+    public void testGrowWhileWrapped() {
+        ReplyQueue queue = new ReplyQueue();
+        List<Command> commands = commands(100);
+
+        // the head moves to the middle of the 16 records, the next ones wrap to the start of the arrays
+        offer(queue, commands, 0, 10);
+        for (int i = 0; i < 7; i++) {
+            assertSame(commands.get(i), queue.poll());
+        }
+        offer(queue, commands, 10, 23);
+        assertEquals(16, queue.size());
+
+        // full and wrapped, the records are unwrapped in a larger ring
+        offer(queue, commands, 23, 100);
+        assertEquals(93, queue.size());
+
+        drain(queue, commands, 7);
+    }
+
+    @Test
+    public void testReuseAfterGrowth() {
+        ReplyQueue queue = new ReplyQueue();
+        List<Command> commands = commands(40);
+
+        // wrap around the grown ring several times
+        for (int round = 0; round < 5; round++) {
+            offer(queue, commands, 0, 40);
+            assertEquals(40, queue.size());
+            drain(queue, commands, 0);
+        }
+    }
+
+    @Test
+    public void testPollIgnoresRemainingReplies() {
+        ReplyQueue queue = new ReplyQueue();
+        List<Command> commands = commands(2);
+        queue.offer(commands.get(0), 3, 0);
+        queue.offer(commands.get(1), 1, 1);
+
+        assertFalse(queue.consume());
+        // e.g. the connection is lost, the command is failed before all its replies
+        assertSame(commands.get(0), queue.poll());
+        assertSame(commands.get(1), queue.peek());
+        assertTrue(queue.consume());
+        assertTrue(queue.isEmpty());
+    }
+}
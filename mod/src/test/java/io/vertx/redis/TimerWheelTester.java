@@ -0,0 +1,81 @@
+package io.vertx.redis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scheduling, expiring and cancelling the command timeouts.
+ */
+public class TimerWheelTester {
+
+    private static Command command(long timeout) {
+        return new Command("get", "key").setTimeout(timeout);
+    }
+
+    @Test
+    public void testExpire() {
+        TimerWheel wheel = new TimerWheel();
+        Command first = command(100);
+        Command second = command(300);
+
+        assertTrue(wheel.schedule(first, 1000));
+        assertFalse(wheel.schedule(second, 1000));
+
+        assertNull(wheel.expire(1099));
+        assertSame(first, wheel.expire(1100));
+        assertNull(first.nextTimeout);
+        assertFalse(wheel.isEmpty());
+
+        assertSame(second, wheel.expire(1300));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testCancel() {
+        TimerWheel wheel = new TimerWheel();
+        // the same slot, cancelled from the head, the middle and the tail of its list
+        Command[] commands = new Command[5];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = command(100);
+            wheel.schedule(commands[i], 1000);
+        }
+
+        wheel.cancel(commands[4]);
+        wheel.cancel(commands[2]);
+        wheel.cancel(commands[0]);
+        assertNull(commands[2].nextTimeout);
+        assertNull(commands[2].prevTimeout);
+
+        // cancelled twice
+        wheel.cancel(commands[2]);
+
+        Command expired = wheel.expire(1100);
+        assertSame(commands[1], expired);
+        assertSame(commands[3], expired.nextTimeout);
+        assertNull(commands[3].nextTimeout);
+        assertTrue(wheel.isEmpty());
+
+        // already expired
+        wheel.cancel(commands[1]);
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testCancelAll() {
+        TimerWheel wheel = new TimerWheel();
+        Command first = command(100);
+        Command second = command(60000);
+        wheel.schedule(first, 1000);
+        wheel.schedule(second, 1000);
+
+        wheel.cancel(first);
+        wheel.cancel(second);
+        assertTrue(wheel.isEmpty());
+        assertNull(wheel.expire(100000));
+
+        // scheduled again once cancelled, e.g. sent to another connection
+        assertTrue(wheel.schedule(first, 100000));
+        assertSame(first, wheel.expire(100100));
+    }
+}
@@ -0,0 +1,101 @@
+package io.vertx.redis.reply;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decoding of the bulk replies, with and without the ASCII fast path.
+ */
+public class BulkReplyTester {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static BulkReply reply(String value, String encoding) {
+        return new BulkReply(new Buffer(value, encoding));
+    }
+
+    @Test
+    public void testAscii() {
+        for (String encoding : new String[] {"UTF-8", "ISO-8859-1", "US-ASCII", "windows-1252", "UTF-16"}) {
+            assertEquals(encoding, "hello world", reply("hello world", encoding).asString(encoding));
+        }
+        assertEquals("", reply("", "UTF-8").asString("UTF-8"));
+    }
+
+    @Test
+    public void testNonAscii() {
+        // 2, 3 and 4 bytes sequences
+        final String value = "h\u00e9llo \u2603 \ud83d\ude00";
+        assertEquals(value, reply(value, "UTF-8").asString("UTF-8"));
+        // the same bytes read as ISO-8859-1, one char per byte
+        assertEquals(new String(value.getBytes(UTF8), Charset.forName("ISO-8859-1")),
+                reply(value, "UTF-8").asString("ISO-8859-1"));
+        assertEquals("\u00e9t\u00e9", reply("\u00e9t\u00e9", "ISO-8859-1").asString("ISO-8859-1"));
+        // the byte 0x80 is the euro sign in windows-1252
+        assertEquals("\u20ac", new BulkReply(new Buffer(new byte[] {(byte) 0x80})).asString("windows-1252"));
+    }
+
+    @Test
+    public void testAsciiLastByte() {
+        // the fast path gives up on the last byte
+        assertEquals("abc\u00e9", reply("abc\u00e9", "UTF-8").asString("UTF-8"));
+        assertEquals("\u007f", reply("\u007f", "UTF-8").asString("UTF-8"));
+    }
+
+    @Test
+    public void testCachedPerEncoding() {
+        final BulkReply reply = reply("caf\u00e9", "UTF-8");
+
+        String utf8 = reply.asString("UTF-8");
+        assertSame(utf8, reply.asString("UTF-8"));
+
+        String latin1 = reply.asString("ISO-8859-1");
+        assertEquals("caf\u00c3\u00a9", latin1);
+        assertSame(latin1, reply.asString("ISO-8859-1"));
+
+        // decoded again, not mixed up with the other encoding
+        assertEquals("caf\u00e9", reply.asString("UTF-8"));
+    }
+
+    @Test
+    public void testViews() {
+        final byte[] bytes = "..hello\u00e9..".getBytes(UTF8);
+
+        // a slice of a larger array, as made by the parser
+        assertEquals("hello\u00e9", new BulkReply(Unpooled.wrappedBuffer(bytes, 2, 7)).asString("UTF-8"));
+        assertEquals("hello", new BulkReply(Unpooled.wrappedBuffer(bytes, 2, 5)).asString("UTF-8"));
+
+        // without an array
+        BulkReply direct = new BulkReply(Unpooled.directBuffer(5).writeBytes("hello".getBytes(UTF8)));
+        assertEquals("hello", direct.asString("UTF-8"));
+        direct.release();
+
+        // a reply spanning several received chunks, a character cut in the middle
+        ByteBuf composite = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(bytes, 2, 6), Unpooled.wrappedBuffer(bytes, 8, 1));
+        assertEquals("hello\u00e9", new BulkReply(composite).asString("UTF-8"));
+        assertEquals("hello", new BulkReply(Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(bytes, 2, 2), Unpooled.wrappedBuffer(bytes, 4, 3))).asString("US-ASCII"));
+    }
+
+    @Test
+    public void testNull() {
+        final BulkReply reply = new BulkReply((Buffer) null);
+        assertNull(reply.asString("UTF-8"));
+        assertNull(reply.asBytes());
+        assertFalse(reply.contentEquals(new byte[0]));
+    }
+
+    @Test
+    public void testContentEquals() {
+        final BulkReply reply = new BulkReply(Unpooled.wrappedBuffer("..message..".getBytes(UTF8), 2, 7));
+        assertTrue(reply.contentEquals("message".getBytes(UTF8)));
+        assertFalse(reply.contentEquals("messages".getBytes(UTF8)));
+        assertFalse(reply.contentEquals("massage".getBytes(UTF8)));
+        assertArrayEquals("message".getBytes(UTF8), reply.asBytes());
+    }
+}
@@ -0,0 +1,299 @@
+package io.vertx.redis.reply;
+
+import io.vertx.redis.RedisConnection;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The parser on its own, the replies are collected by a stand-in connection.
+ */
+public class ReplyParserTester {
+
+    // every RESP3 type, an attribute is dropped with the reply it describes the next one
+    private static final String RESP3 = "%2\r\n+a\r\n:1\r\n$1\r\nb\r\n,2.5\r\n" +
+            "~2\r\n#t\r\n#f\r\n" +
+            ">3\r\n$7\r\nmessage\r\n$2\r\nch\r\n$2\r\nhi\r\n" +
+            "_\r\n" +
+            ",inf\r\n,-inf\r\n,nan\r\n" +
+            "(3492890328409238509324850943850943825024385\r\n" +
+            "=15\r\ntxt:Some string\r\n" +
+            "!21\r\nSYNTAX invalid syntax\r\n" +
+            "|1\r\n+key-popularity\r\n%1\r\n$1\r\na\r\n,0.1923\r\n*2\r\n:2039123\r\n:9543892\r\n";
+    private static final List<String> RESP3_PARSED = Arrays.asList("%[+a, :1, $b, ,2.5]", "~[#true, #false]",
+            ">[$message, $ch, $hi]", "_null", ",Infinity", ",-Infinity", ",NaN",
+            "(3492890328409238509324850943850943825024385", "$Some string", "-SYNTAX invalid syntax",
+            "*[:2039123, :9543892]");
+
+    // a multi bulk reply with every RESP2 type
+    private static final String MIXED = "*5\r\n+OK\r\n:1234567\r\n$11\r\nhello world\r\n$-1\r\n*2\r\n$3\r\nfoo\r\n-ERR bar\r\n";
+    private static final String MIXED_PARSED = "*[+OK, :1234567, $hello world, $null, *[$foo, -ERR bar]]";
+
+    /**
+     * Stands in for the connection, keeps a description of the replies as the views they hold are released once
+     * dispatched.
+     */
+    static final class Collector extends RedisConnection {
+
+        final List<String> replies = new ArrayList<>();
+        // the replies themselves, the views of the bulk replies are not readable anymore
+        final List<Reply> received = new ArrayList<>();
+
+        Collector() {
+            super(null, null, null, 0, null, 0, null);
+        }
+
+        @Override
+        public void handleReply(Reply reply) {
+            replies.add(describe(reply));
+            received.add(reply);
+        }
+
+        @Override
+        public Handler<Reply> getElementHandler() {
+            return null;
+        }
+    }
+
+    static String describe(Reply reply) {
+        switch (reply.getType()) {
+            case '$':
+                String value = ((BulkReply) reply).asString("UTF-8");
+                return "$" + value;
+            case '*':
+            case '~':
+            case '%':
+            case '>':
+            case '|':
+                Reply[] elements = ((MultiBulkReply) reply).data();
+                if (elements == null) {
+                    return (char) reply.getType() + "null";
+                }
+                List<String> described = new ArrayList<>();
+                for (Reply element : elements) {
+                    described.add(describe(element));
+                }
+                return (char) reply.getType() + described.toString();
+            default:
+                return (char) reply.getType() + String.valueOf(reply.data());
+        }
+    }
+
+    // Parse the chunks in turn
+    static List<String> parse(String... chunks) {
+        Collector collector = new Collector();
+        ReplyParser parser = new ReplyParser(collector);
+        try {
+            for (String chunk : chunks) {
+                parser.handle(new Buffer(chunk, "UTF-8"));
+            }
+        } finally {
+            parser.close();
+        }
+        return collector.replies;
+    }
+
+    @Test
+    public void testSingleChunk() {
+        assertEquals(Arrays.asList(MIXED_PARSED, "+PONG", ":-1"), parse(MIXED + "+PONG\r\n:-1\r\n"));
+    }
+
+    @Test
+    public void testSplitAtEveryByte() {
+        final String replies = MIXED + ":42\r\n";
+        final List<String> expected = Arrays.asList(MIXED_PARSED, ":42");
+
+        for (int i = 1; i < replies.length(); i++) {
+            assertEquals("split at " + i, expected, parse(replies.substring(0, i), replies.substring(i)));
+        }
+    }
+
+    @Test
+    public void testSplitInThree() {
+        for (int i = 1; i < MIXED.length(); i++) {
+            for (int j = i + 1; j < MIXED.length(); j++) {
+                assertEquals("split at " + i + " and " + j, Arrays.asList(MIXED_PARSED),
+                        parse(MIXED.substring(0, i), MIXED.substring(i, j), MIXED.substring(j)));
+            }
+        }
+    }
+
+    @Test
+    public void testByteByByte() {
+        String[] bytes = new String[MIXED.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = MIXED.substring(i, i + 1);
+        }
+        assertEquals(Arrays.asList(MIXED_PARSED), parse(bytes));
+    }
+
+    @Test
+    public void testIncompleteReplyWaits() {
+        assertEquals(Arrays.<String>asList(), parse("*2\r\n$3\r\nfoo\r\n", "$3\r\nba"));
+        assertEquals(Arrays.asList("*[$foo, $bar]"), parse("*2\r\n$3\r\nfoo\r\n", "$3\r\nba", "r\r\n"));
+    }
+
+    @Test
+    public void testNullAndEmpty() {
+        assertEquals(Arrays.asList("*null", "*[]", "$", "$null"), parse("*-1\r\n*0\r\n$0\r\n\r\n$-1\r\n"));
+    }
+
+    @Test
+    public void testConsumedChunksAreDropped() {
+        Collector collector = new Collector();
+        ReplyParser parser = new ReplyParser(collector);
+
+        parser.handle(new Buffer("$5\r\nhel"));
+        assertEquals(0, collector.replies.size());
+        assertEquals(1, parser.chunks());
+
+        // the bulk spans two chunks, only the first one is fully consumed
+        parser.handle(new Buffer("lo\r\n:1"));
+        assertEquals(Arrays.asList("$hello"), collector.replies);
+        assertEquals(1, parser.chunks());
+
+        // the offsets were rebased on the remaining chunk
+        parser.handle(new Buffer("2\r\n+O"));
+        assertEquals(Arrays.asList("$hello", ":12"), collector.replies);
+        assertEquals(1, parser.chunks());
+
+        parser.handle(new Buffer("K\r\n"));
+        assertEquals(Arrays.asList("$hello", ":12", "+OK"), collector.replies);
+        assertEquals(0, parser.chunks());
+        parser.close();
+    }
+
+    @Test
+    public void testLongStreamOfSmallChunks() {
+        StringBuilder replies = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            replies.append("*2\r\n$").append(Integer.toString(i).length()).append("\r\n").append(i).append("\r\n:").append(i).append("\r\n");
+            expected.add("*[$" + i + ", :" + i + "]");
+        }
+
+        Collector collector = new Collector();
+        ReplyParser parser = new ReplyParser(collector);
+
+        // chunks of 7 bytes cut the replies everywhere, every discard rebases the offsets
+        for (int i = 0; i < replies.length(); i += 7) {
+            parser.handle(new Buffer(replies.substring(i, Math.min(replies.length(), i + 7))));
+            // only the chunks of the reply being parsed are kept
+            assertTrue(parser.chunks() <= 4);
+        }
+
+        assertEquals(expected, collector.replies);
+        assertEquals(0, parser.chunks());
+        parser.close();
+    }
+
+    @Test
+    public void testIntegerLimits() {
+        assertEquals(Arrays.asList(":9223372036854775807", ":-9223372036854775808", ":0"),
+                parse(":9223372036854775807\r\n:-9223372036854775808\r\n:-0\r\n"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testIntegerOverflow() {
+        parse(":9223372036854775808\r\n");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testIntegerUnderflow() {
+        parse(":-9223372036854775809\r\n");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testIntegerWrapAround() {
+        // wraps to a positive number if not checked
+        parse(":99999999999999999999\r\n");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBulkLengthOverflow() {
+        parse("$4294967297\r\n");
+    }
+
+    @Test
+    public void testSmallIntegersAreShared() {
+        assertSame(IntegerReply.valueOf(-1), IntegerReply.valueOf(-1));
+        assertSame(IntegerReply.valueOf(0), IntegerReply.valueOf(0));
+        assertSame(IntegerReply.valueOf(1024), IntegerReply.valueOf(1024));
+        assertNotSame(IntegerReply.valueOf(-2), IntegerReply.valueOf(-2));
+        assertNotSame(IntegerReply.valueOf(1025), IntegerReply.valueOf(1025));
+        assertEquals(Long.valueOf(1024), IntegerReply.valueOf(1024).data());
+        assertEquals(Long.valueOf(-2), IntegerReply.valueOf(-2).data());
+    }
+
+    @Test
+    public void testSharedStatuses() {
+        Collector collector = new Collector();
+        ReplyParser parser = new ReplyParser(collector);
+        // split in the middle of a status
+        parser.handle(new Buffer("+OK\r\n+QUEUED\r\n+PO"));
+        parser.handle(new Buffer("NG\r\n+OKAY\r\n+ok\r\n+O\r\n+OK\r\n"));
+        parser.close();
+
+        assertSame(StatusReply.OK, collector.received.get(0));
+        assertSame(StatusReply.QUEUED, collector.received.get(1));
+        assertSame(StatusReply.PONG, collector.received.get(2));
+        // only the exact statuses are shared
+        assertEquals(Arrays.asList("+OKAY", "+ok", "+O"), collector.replies.subList(3, 6));
+        for (Reply reply : collector.received.subList(3, 6)) {
+            assertNotSame(StatusReply.OK, reply);
+        }
+        assertSame(StatusReply.OK, collector.received.get(6));
+    }
+
+    @Test
+    public void testResp3Types() {
+        assertEquals(RESP3_PARSED, parse(RESP3));
+    }
+
+    @Test
+    public void testResp3SplitAtEveryByte() {
+        for (int i = 1; i < RESP3.length(); i++) {
+            assertEquals("split at " + i, RESP3_PARSED, parse(RESP3.substring(0, i), RESP3.substring(i)));
+        }
+    }
+
+    @Test
+    public void testResp3Aggregates() {
+        assertEquals(Arrays.asList("%[]", "~[]", "*null", "%[$k, %[$n, _null]]", "~[*[:1, ,-0.5], $]"),
+                parse("%0\r\n~0\r\n*-1\r\n%1\r\n$1\r\nk\r\n%1\r\n$1\r\nn\r\n_\r\n~2\r\n*2\r\n:1\r\n,-0.5\r\n$0\r\n\r\n"));
+        // the attribute of an element is dropped too
+        assertEquals(Arrays.asList("*[:1, :2]"), parse("*2\r\n|1\r\n$1\r\na\r\n$1\r\nb\r\n:1\r\n:2\r\n"));
+    }
+
+    @Test
+    public void testEmptyVerbatim() {
+        assertEquals(Arrays.asList("$"), parse("=4\r\ntxt:\r\n"));
+    }
+
+    @Test
+    public void testShortVerbatim() {
+        try {
+            parse("=3\r\ntxt\r\n");
+            fail();
+        } catch (RuntimeException e) {
+            // a protocol error, not an index out of the frame
+            assertEquals("Invalid verbatim string", e.getMessage());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testVerbatimWithoutFormat() {
+        parse("=5\r\nhello\r\n");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnsupportedType() {
+        parse("?oops\r\n");
+    }
+}